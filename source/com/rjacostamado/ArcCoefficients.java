@@ -0,0 +1,58 @@
+import java.time.LocalDate;
+
+/*
+ * Stores the coefficients of the investment arcs of the network. For a given
+ * date of the interest rates, the coefficient of an arc only depends on the
+ * number of financial days between its nodes, so each duration between 30 and
+ * 1799 days is worked out once and then copied to every arc with that
+ * duration. The coefficients of the arcs are kept in a flat array holding the
+ * upper triangle of a size x size matrix, where the row is the index of the
+ * node the investment starts at and the column the index of the node it ends
+ * at.
+ */
+public class ArcCoefficients
+{
+	static final int MIN_DURATION = 30;
+	static final int MAX_DURATION = 1799;
+
+	private final LocalDate rates;
+	private final int size;
+	private final double[] byDuration = new double[MAX_DURATION + 1];
+	private final double[] byArc;
+
+	public ArcCoefficients(LocalDate r, int s)
+	{
+		rates = r;
+		size = s;
+		byArc = new double[(int) ((long) size * (size - 1) / 2)];
+	}
+
+	/*
+	 * Coefficients are never below one, so a zero marks a duration that has not
+	 * been worked out yet.
+	 */
+	public double forDuration(int duration) {
+		if (duration < MIN_DURATION || duration > MAX_DURATION)
+			throw new IllegalArgumentException("There are no interest rates for investments of " + duration + " days");
+		if (byDuration[duration] == 0)
+			byDuration[duration] = CFO.getDurationCoeff(rates, duration);
+		return byDuration[duration];
+	}
+
+	public void put(int from, int to, double coeff) {
+		byArc[index(from, to)] = coeff;
+	}
+
+	public double get(int from, int to) {
+		return byArc[index(from, to)];
+	}
+
+	public LocalDate getRates() {
+		return rates;
+	}
+
+	// Position of the arc (from, to), with from < to, in the upper triangle
+	private int index(int from, int to) {
+		return from * (2 * size - from - 1) / 2 + (to - from - 1);
+	}
+}
@@ -0,0 +1,102 @@
+import java.util.Arrays;
+
+/*
+ * Arcs of the network in compressed sparse rows. The arcs starting at node i
+ * are the arcs first[i] to first[i + 1] - 1, and head holds the node each arc
+ * ends at. Arcs are added by start node and then by end node, the order in
+ * which CFO creates them, so each one is appended in constant time and a
+ * duplicate, which could only be equal to the arc added before it, is
+ * rejected. The number of an arc is its position in head, and it is also the
+ * number of its variable in the model (see CFO.indexArcs).
+ */
+public class ArcGraph
+{
+	final int[] first;
+	int[] head;
+	private int count = 0;
+	// Last node an arc has been added from, whose row is still open
+	private int open = 0;
+	private boolean closed = false;
+
+	public ArcGraph(int nodes, int capacity)
+	{
+		first = new int[nodes + 1];
+		head = new int[Math.max(capacity, 16)];
+	}
+
+	public void add(int from, int to) {
+		if (closed)
+			throw new IllegalStateException("No arcs can be added once the graph is closed");
+		if (from < open || to <= from || to >= first.length - 1
+				|| (from == open && count > first[open] && to <= head[count - 1]))
+			throw new IllegalArgumentException("Arc from " + from + " to " + to + " is out of order");
+		while (open < from)
+			first[++open] = count;
+		if (count == head.length)
+			head = Arrays.copyOf(head, 2 * count);
+		head[count++] = to;
+	}
+
+	// Arcs from one node to every node from firstTo to lastTo, both included
+	public void addRange(int from, int firstTo, int lastTo) {
+		if (lastTo < firstTo)
+			return;
+		if (lastTo >= first.length - 1)
+			throw new IllegalArgumentException("Arc from " + from + " to " + lastTo + " is out of order");
+		add(from, firstTo);
+		int n = lastTo - firstTo;
+		if (count + n > head.length)
+			head = Arrays.copyOf(head, Math.max(2 * head.length, count + n));
+		for (int k = 1; k <= n; k++)
+			head[count++] = firstTo + k;
+	}
+
+	/*
+	 * Ends the rows of the nodes with no arcs after the last one added, and
+	 * trims head to the arcs added.
+	 */
+	public ArcGraph close() {
+		if (!closed) {
+			while (open < first.length - 1)
+				first[++open] = count;
+			if (head.length != count)
+				head = Arrays.copyOf(head, count);
+			closed = true;
+		}
+		return this;
+	}
+
+	public int size() {
+		return count;
+	}
+
+	public int nodes() {
+		return first.length - 1;
+	}
+
+	// Node each arc starts at
+	public int[] tails() {
+		int[] tail = new int[count];
+		for (int idx = 0; idx < first.length - 1; idx++)
+			Arrays.fill(tail, first[idx], first[idx + 1], idx);
+		return tail;
+	}
+
+	// The arcs of this graph that keep holds true for, in the same order
+	public ArcGraph filter(boolean[] keep) {
+		close();
+		int kept = 0;
+		for (int a = 0; a < count; a++)
+			if (keep[a])
+				kept++;
+		ArcGraph graph = new ArcGraph(nodes(), kept);
+		for (int idx = 0; idx < first.length - 1; idx++) {
+			graph.first[idx] = graph.count;
+			for (int a = first[idx]; a < first[idx + 1]; a++)
+				if (keep[a])
+					graph.head[graph.count++] = head[a];
+		}
+		graph.open = first.length - 2;
+		return graph.close();
+	}
+}
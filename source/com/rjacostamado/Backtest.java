@@ -0,0 +1,123 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * What the optimal plan of a household would have earned under each of the
+ * rate sheets read (see CFO.readData), as if each one had been in force over
+ * the whole horizon. The nodes, arcs and flows do not depend on the rates, so
+ * the network of cfo is built and numbered once; for each rate date only the
+ * coefficients of the investment arcs and their bounds are worked out again
+ * (see CFO.withRates), from the durations of the arcs found once. The network
+ * must not have been presolved, since the arcs the presolve drops depend on
+ * the rates.
+ *
+ * At most parallelism rate dates are solved at the same time, each with its
+ * share of the threads of the machine. Each one writes its plan, tagged with
+ * its rate date (see CFO.getOutputName), and a summary of all of them is
+ * written to backtest_between_<start>_and_<end>.csv.
+ */
+public class Backtest
+{
+	public static class Outcome
+	{
+		public final LocalDate rates;
+		public String status;
+		public double objective = Double.NaN;
+		public double gap = Double.NaN;
+		public double seconds;
+
+		Outcome(LocalDate r)
+		{
+			rates = r;
+		}
+	}
+
+	final CFO cfo;
+	final int parallelism;
+	boolean javaEngine = false;
+	boolean minInvestment = true;
+
+	public Backtest(CFO c, int p)
+	{
+		cfo = c;
+		parallelism = p;
+	}
+
+	/*
+	 * Every date of the rates read.
+	 */
+	public static List<LocalDate> rateDates() {
+		RateTermStructure rates = CFO.getInterestRates();
+		List<LocalDate> dates = new ArrayList<>();
+		for (int column = 0; column < rates.getNumberOfDates(); column++)
+			dates.add(rates.getDate(column));
+		return dates;
+	}
+
+	public List<Outcome> run(List<LocalDate> dates) throws IOException, InterruptedException {
+		long startTime = System.nanoTime();
+		cfo.indexArcs();
+		LocalDate[] nodeDates = cfo.nodes.dates();
+		int[] durations = new int[cfo.invFrom.length];
+		for (int a = 0; a < durations.length; a++)
+			durations[a] = FinDateCalc.getFinDaysBetween(nodeDates[cfo.invFrom[a]], nodeDates[cfo.invTo[a]]);
+		System.out.println("Backtest of " + dates.size() + " rate dates over " + cfo.invFrom.length
+				+ " investment arcs, prepared in " + (System.nanoTime() - startTime) / 1_000_000_000.0 + " seconds");
+
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / parallelism);
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		List<Future<Outcome>> futures = new ArrayList<>();
+		for (LocalDate date : dates)
+			futures.add(pool.submit(() -> solve(date, durations, threads)));
+		pool.shutdown();
+
+		List<Outcome> outcomes = new ArrayList<>();
+		for (int k = 0; k < futures.size(); k++)
+			try {
+				outcomes.add(futures.get(k).get());
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				Outcome outcome = new Outcome(dates.get(k));
+				outcome.status = "Error: " + e.getCause();
+				outcomes.add(outcome);
+			}
+
+		try (PrintWriter printWriter = new PrintWriter(new FileWriter(cfo.getOutputName("backtest") + ".csv"))) {
+			printWriter.println("Rates,Status,Objective,Gap,Duration");
+			for (Outcome outcome : outcomes)
+				printWriter.printf(Locale.US, "%s,%s,%.2f,%.6f,%.3f\n", outcome.rates, outcome.status.replace(',', ';'),
+						outcome.objective, outcome.gap, outcome.seconds);
+		}
+		return outcomes;
+	}
+
+	private Outcome solve(LocalDate date, int[] durations, int threads) throws IOException {
+		long startTime = System.nanoTime();
+		Outcome outcome = new Outcome(date);
+		CFO view = cfo.withRates(date, durations);
+		if (javaEngine) {
+			JavaFlowSolver.Result result = view.optimizeCashFlowJava(minInvestment);
+			outcome.status = result.status;
+			outcome.objective = result.objective;
+			outcome.gap = result.getGap();
+		} else {
+			view.solverThreads = threads;
+			outcome.objective = view.optimizeCashFlow();
+			// optimizeCashFlow leaves the status and the gap of CPLEX in the metrics
+			String status = view.metrics.getStatus();
+			outcome.status = status != null ? status : Double.isNaN(outcome.objective) ? "NoSolution" : "Solved";
+			outcome.gap = view.metrics.get("mip_gap");
+		}
+		outcome.seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+		return outcome;
+	}
+}
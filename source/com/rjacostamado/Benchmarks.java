@@ -0,0 +1,399 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import ilog.cplex.IloCplex;
+
+/*
+ * Benchmarks of the steps that come before the solver: the financial date
+ * arithmetic, reading the interest rates from the csv or from its snapshot,
+ * building the nodes, arcs and coefficients of the network, assembling the
+ * model and solving its linear relaxation, for both formulations of the
+ * balance (see CFO.balanceChain). The model is assembled and solved by the
+ * Java engine (see JavaFlowSolver), which stands in for CPLEX so the
+ * benchmarks run on machines without it; the CPLEX model (see CFO.buildModel)
+ * is also timed when its library can be loaded.
+ *
+ * Every benchmark runs for each horizon (90 financial days, a year, three years
+ * and 1799 financial days by default), first --warmup iterations whose times
+ * are dropped and then --iterations measured ones, each of them repeating the
+ * operation for at least --time seconds. The state an operation needs, such as
+ * the nodes for createNetworkArcs, is built before each repetition and is not
+ * timed. Besides the time of an operation, the bytes it allocates are reported,
+ * read from the allocation counter of the thread as the gc profiler of JMH
+ * does. The results are printed and written to benchmarks.csv.
+ *
+ * Run it from the folder holding data/BankInterestRates.csv, with a larger heap
+ * for the longest horizons:
+ *
+ *   java -Xmx8g Benchmarks [--horizons=90,360] [--warmup=3] [--iterations=5] [--time=1] [name ...]
+ *
+ * where the names pick some of the benchmarks below.
+ */
+public class Benchmarks
+{
+	static final LocalDate START = LocalDate.of(2024, 12, 1);
+	static final LocalDate RATES = LocalDate.of(2024, 11, 1);
+	static final String RATES_FILE = "data/BankInterestRates.csv";
+	static final String HEADER = "Benchmark,Horizon,Iterations,Operations,NsPerOp,NsPerOpError,BytesPerOp";
+
+	// Results are stored here so the JIT cannot drop the work producing them
+	static volatile Object sink;
+
+	/*
+	 * An operation to time. setUp builds what every repetition needs and is not
+	 * timed; operations counts how many times run does the operation, for the
+	 * benchmarks repeating a cheap one over many inputs.
+	 */
+	static abstract class Benchmark
+	{
+		final String name;
+		int operations = 1;
+
+		Benchmark(String n)
+		{
+			name = n;
+		}
+
+		void setUp() throws Exception {
+		}
+
+		abstract Object run() throws Exception;
+	}
+
+	int warmup = 3;
+	int iterations = 5;
+	double seconds = 1;
+	private final com.sun.management.ThreadMXBean threads;
+
+	public Benchmarks()
+	{
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			threads = (com.sun.management.ThreadMXBean) bean;
+			threads.setThreadAllocatedMemoryEnabled(true);
+		} else
+			threads = null;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Benchmarks benchmarks = new Benchmarks();
+		int[] horizons = { 90, 360, 1080, 1799 };
+		List<String> names = new ArrayList<>();
+		for (String arg : args) {
+			if (arg.startsWith("--horizons="))
+				horizons = Arrays.stream(arg.substring("--horizons=".length()).split(",")).mapToInt(Integer::parseInt)
+						.toArray();
+			else if (arg.startsWith("--warmup="))
+				benchmarks.warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+			else if (arg.startsWith("--iterations="))
+				benchmarks.iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+			else if (arg.startsWith("--time="))
+				benchmarks.seconds = Double.parseDouble(arg.substring("--time=".length()));
+			else
+				names.add(arg);
+		}
+
+		CFO.debug = false;
+		try (PrintWriter printWriter = new PrintWriter(new FileWriter("benchmarks.csv"))) {
+			printWriter.println(HEADER);
+			System.out.println(HEADER);
+			for (int days : horizons) {
+				if (days < 30 || days > 1799)
+					throw new IllegalArgumentException("Horizons must be between 30 and 1799 financial days, not " + days);
+				for (Benchmark benchmark : benchmarks.create(days)) {
+					if (!names.isEmpty() && !names.contains(benchmark.name))
+						continue;
+					String line = benchmarks.measure(benchmark, days);
+					if (line == null)
+						continue;
+					System.out.println(line);
+					printWriter.println(line);
+					printWriter.flush();
+				}
+			}
+		}
+	}
+
+	/*
+	 * The benchmarks for a horizon of the given number of financial days from
+	 * START. The horizon ends on the last day no more than that many financial
+	 * days after START as counted by getFinDaysBetween, the count Experiments
+	 * checks against the longest investment.
+	 */
+	List<Benchmark> create(int days) throws IOException {
+		LocalDate end = endOfHorizon(days);
+		int calendarDays = (int) (end.toEpochDay() - START.toEpochDay());
+		CFO.InterestRateLookup();
+		CFO.readData(RATES_FILE);
+		List<Benchmark> benchmarks = new ArrayList<>();
+
+		// Dates and spans drawn over the horizon, the same ones for every run
+		Random random = new Random(days);
+		LocalDate[] from = new LocalDate[1024];
+		LocalDate[] to = new LocalDate[from.length];
+		int[] span = new int[from.length];
+		for (int k = 0; k < from.length; k++) {
+			from[k] = START.plusDays(random.nextInt(calendarDays + 1));
+			to[k] = from[k].plusDays(random.nextInt(calendarDays + 1));
+			span[k] = random.nextInt(days + 1);
+		}
+
+		benchmarks.add(new Benchmark("getFinDaysBetween")
+		{
+			{
+				operations = from.length;
+			}
+
+			Object run() {
+				int total = 0;
+				for (int k = 0; k < from.length; k++)
+					total += FinDateCalc.getFinDaysBetween(from[k], to[k]);
+				return total;
+			}
+		});
+		benchmarks.add(new Benchmark("addFinancialDays")
+		{
+			{
+				operations = from.length;
+			}
+
+			Object run() {
+				long total = 0;
+				for (int k = 0; k < from.length; k++)
+					total += FinDateCalc.addFinancialDays(from[k], span[k]).toEpochDay();
+				return total;
+			}
+		});
+		/*
+		 * Reading the rates by parsing the csv and by mapping its snapshot (see
+		 * RateSnapshot), for the file of the bank and for a history of ten years of
+		 * daily rates.
+		 */
+		String history = rateHistory(3650);
+		for (String file : new String[] { RATES_FILE, history })
+			for (boolean snapshot : new boolean[] { false, true })
+				benchmarks.add(new Benchmark((file == history ? "readHistory" : "readData") + (snapshot ? "" : "Csv"))
+				{
+					Object run() throws IOException {
+						CFO.rateSnapshot = snapshot;
+						try {
+							CFO.InterestRateLookup();
+							CFO.readData(file);
+							return CFO.getInterestRates();
+						} finally {
+							CFO.rateSnapshot = true;
+						}
+					}
+				});
+		benchmarks.add(new Benchmark("CreateNodeDataBases")
+		{
+			CFO cfo;
+
+			void setUp() {
+				cfo = new CFO(START, end, RATES);
+			}
+
+			Object run() {
+				cfo.CreateNodeDataBases(START, end);
+				return cfo;
+			}
+		});
+		for (boolean chain : new boolean[] { false, true }) {
+			// The formulation with one balance arc per day (see CFO.balanceChain)
+			String suffix = chain ? "Chain" : "";
+			benchmarks.add(new Benchmark("createNetworkArcs" + suffix)
+			{
+				CFO cfo;
+
+				void setUp() {
+					cfo = network(end, chain, false);
+				}
+
+				Object run() {
+					cfo.createNetworkArcs(cfo.nodes.size() - 1);
+					return cfo;
+				}
+			});
+			if (!chain)
+				benchmarks.add(new Benchmark("setArcsCoeff")
+				{
+					CFO cfo;
+
+					void setUp() {
+						if (cfo == null)
+							cfo = network(end, false, true);
+					}
+
+					Object run() {
+						cfo.setArcsCoeff();
+						return cfo.arcsCoeff;
+					}
+				});
+			benchmarks.add(new Benchmark("modelAssembly" + suffix)
+			{
+				CFO cfo;
+
+				void setUp() {
+					if (cfo == null) {
+						cfo = network(end, chain, true);
+						cfo.setArcsCoeff();
+					}
+				}
+
+				Object run() {
+					cfo.indexArcs();
+					return new JavaFlowSolver(cfo, true);
+				}
+			});
+			// Linear relaxation solved by the Java engine, without writing the plan
+			benchmarks.add(new Benchmark("solveRelaxation" + suffix)
+			{
+				JavaFlowSolver solver;
+
+				void setUp() {
+					CFO cfo = network(end, chain, true);
+					cfo.setArcsCoeff();
+					cfo.indexArcs();
+					solver = new JavaFlowSolver(cfo, false);
+				}
+
+				Object run() {
+					return solver.solve();
+				}
+			});
+		}
+		benchmarks.add(new Benchmark("cplexModelAssembly")
+		{
+			CFO cfo;
+
+			void setUp() {
+				if (cfo != null)
+					return;
+				cfo = new CFO(START, end, RATES);
+				cfo.CreateNodeDataBases(START, end);
+				cfo.setSinkAndSourceNodes();
+				cfo.createNetworkArcs(cfo.nodes.size() - 1);
+				cfo.setArcsCoeff();
+				cfo.indexArcs();
+			}
+
+			Object run() throws Exception {
+				try (IloCplex smartSaver = new IloCplex()) {
+					smartSaver.setOut(null);
+					return cfo.buildModel(smartSaver);
+				}
+			}
+		});
+		// Leaves the rates of the bank in place for the other benchmarks
+		CFO.InterestRateLookup();
+		CFO.readData(RATES_FILE);
+		return benchmarks;
+	}
+
+	/*
+	 * Temporary csv with the bands of the bank and rates for each of the given
+	 * number of days up to START, and its snapshot.
+	 */
+	static String rateHistory(int days) throws IOException {
+		File file = File.createTempFile("rates", ".csv");
+		file.deleteOnExit();
+		new File(file.getPath() + RateSnapshot.EXTENSION).deleteOnExit();
+		int[][] bands = { { 30, 59 }, { 60, 89 }, { 90, 119 }, { 120, 179 }, { 180, 359 }, { 360, 539 }, { 540, 719 },
+				{ 720, 1799 } };
+		Random random = new Random(days);
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("M/d/yyyy");
+		try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+			StringBuilder line = new StringBuilder("dLinf,dLsup,label,unit");
+			for (int d = days; d > 0; d--)
+				line.append(',').append(START.minusDays(d).format(formatter));
+			writer.println(line);
+			for (int b = 0; b < bands.length; b++) {
+				line.setLength(0);
+				line.append(bands[b][0]).append(',').append(bands[b][1]).append(",band").append(b).append(",days");
+				for (int d = 0; d < days; d++)
+					line.append(',').append(String.format(Locale.US, "%.4f", 0.07 + 0.03 * random.nextDouble()));
+				writer.println(line);
+			}
+		}
+		return file.getPath();
+	}
+
+	// Network of the default household up to end, with its arcs when arcs is set
+	static CFO network(LocalDate end, boolean chain, boolean arcs) {
+		CFO cfo = new CFO(START, end, RATES);
+		cfo.balanceChain = chain;
+		cfo.CreateNodeDataBases(START, end);
+		cfo.setSinkAndSourceNodes();
+		if (arcs)
+			cfo.createNetworkArcs(cfo.nodes.size() - 1);
+		return cfo;
+	}
+
+	static LocalDate endOfHorizon(int days) {
+		LocalDate end = START.plusDays(days * 366L / 360 + 2);
+		while (FinDateCalc.getFinDaysBetween(START, end) > days)
+			end = end.minusDays(1);
+		return end;
+	}
+
+	/*
+	 * Runs the warmup and measured iterations of a benchmark and returns its
+	 * line of results, or null when it cannot run here (CPLEX missing).
+	 */
+	String measure(Benchmark benchmark, int days) throws Exception {
+		double[] nsPerOp = new double[iterations];
+		long totalOperations = 0;
+		long totalBytes = 0;
+		for (int i = -warmup; i < iterations; i++) {
+			long elapsed = 0;
+			long bytes = 0;
+			long operations = 0;
+			while (operations == 0 || elapsed < seconds * 1e9) {
+				try {
+					benchmark.setUp();
+					long allocated = allocatedBytes();
+					long startTime = System.nanoTime();
+					sink = benchmark.run();
+					elapsed += System.nanoTime() - startTime;
+					bytes += allocatedBytes() - allocated;
+				} catch (UnsatisfiedLinkError | NoClassDefFoundError e) {
+					System.out.println(benchmark.name + " skipped: " + e);
+					return null;
+				}
+				operations += benchmark.operations;
+			}
+			if (i >= 0) {
+				nsPerOp[i] = (double) elapsed / operations;
+				totalOperations += operations;
+				totalBytes += bytes;
+			}
+		}
+
+		double mean = Arrays.stream(nsPerOp).average().orElse(Double.NaN);
+		double variance = 0;
+		for (double v : nsPerOp)
+			variance += (v - mean) * (v - mean);
+		double error = iterations > 1 ? Math.sqrt(variance / (iterations - 1)) : Double.NaN;
+		double bytesPerOp = threads == null ? Double.NaN : (double) totalBytes / totalOperations;
+		return String.format(Locale.US, "%s,%d,%d,%d,%.1f,%.1f,%.1f", benchmark.name, days, iterations, totalOperations,
+				mean, error, bytesPerOp);
+	}
+
+	// Bytes allocated so far by the current thread, zero if the JVM cannot tell
+	private long allocatedBytes() {
+		if (threads == null)
+			return 0;
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -11,51 +11,63 @@
 import ilog.cplex.*;
 import ilog.concert.*;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Locale;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 public class CFO
 {
 	LocalDate start;
 	LocalDate end;
 	LocalDate rates;
+	// Incomes, bills and pay days of the household (see Scenario)
+	final Scenario scenario;
+	/*
+	 * Time, memory and sizes of each phase of this run (see RunMetrics), set
+	 * aside while WindowDecomposition runs so that a later solve of the whole
+	 * model does not count its phases.
+	 */
+	RunMetrics metrics;
 	
 	// Constructor
 	public CFO(LocalDate s, LocalDate e, LocalDate r)
+	{
+		this(s, e, r, Scenario.DEFAULT);
+	}
+
+	public CFO(LocalDate s, LocalDate e, LocalDate r, Scenario c)
 	{
 		start = s;
 		end = e;
 		rates = r;
+		scenario = c;
+		metrics = new RunMetrics(this);
+		if (interestRates != null)
+			metrics.record("rate_load", rateLoadSeconds, rateLoadBytes);
 	}
 
 
 	static NumberFormat currencyFormatter = NumberFormat.getCurrencyInstance(Locale.US);
-	HashMap<Integer, Node> networkNodes = new HashMap<>();
-	HashMap<LocalDate, Node> nodeDates = new HashMap<>();
-	ArrayList<Node> sourceNodes = new ArrayList<>();
-	ArrayList<Node> sinkNodes = new ArrayList<>();
-	HashMap<Node, ArrayList<Node>> before = new HashMap<>();
-	HashMap<Node, ArrayList<Node>> after = new HashMap<>();
-	HashMap<Node, ArrayList<Node>> befInt = new HashMap<>();
-	HashMap<Node, ArrayList<Node>> aftInt = new HashMap<>();
-	HashMap<Node, ArrayList<Node>> arcs = new HashMap<>();
-	HashMap<Node, ArrayList<Node>> intArcs = new HashMap<>();
-	HashMap<Node, HashMap<Node, Double>> arcsCoeff = new HashMap<>();
+	// One node per day from start to end (see CreateNodeDataBases)
+	NodeStore nodes;
+	// Nodes of the days with an income and of the days with a bill to pay
+	int[] sourceNodes = new int[0];
+	int[] sinkNodes = new int[0];
+	/*
+	 * Investment arcs (arcs) and balance arcs (intArcs), numbered by the node
+	 * they start at and then by the node they end at (see ArcGraph).
+	 */
+	ArcGraph arcs;
+	ArcGraph intArcs;
+	ArcCoefficients arcsCoeff;
 	/*
 	 * Sets the time window for the cash flow optimization program (cfop) and the
 	 * date of the interest rates to apply in the model. The investment horizon
@@ -68,300 +80,142 @@ public class CFO
 	/*
 	 * sets an upper bound for any investment
 	 */
-	static int M = 13000000;
-	/*
-	 * sets the day of the month the salary is paid. Cannot be 31, use any day
-	 * between 1 and 28. Otherwise, an adjustment is required for the month of
-	 * february.
-	 */
-	static int payDay = 1;
-	/*
-	 * sets the day passive income (e.g.: rent from a owned property) as the fifth
-	 * day of each month.
-	 */
-	static int pasIncDay = 5;
+	static final int M = 13000000;
 	/*
-	 * the following lines of code set the days for the payment of the
-	 * administration, credit cards, water and gas bills and mortgage installment.
-	 * For simplicity, remember not to use any day between 29 and 31.
+	 * sets the minimum amount of any investment
 	 */
-	static int admPymt = 10;
-	static int credCardsPymt = 15;
-	static int utilitiesPymt = 16;
-	static int mortgagePymt = 25;
+	static final double minInv = 500000;
 	/*
-	 * the following lines of code set the month of the year when inflation
-	 * increases on the passive income (passIncr), salary (salIncr, administration, credit cards and 
-	 * utilities are effective.
+	 * when debugging, the variables of the model are given names such as x_i_j
 	 */
-	static int passIncr = 1;
-	static int salIncr = 1;	
-	static int admIncr = 1;
-	static int credCardIncr = 1;
-	static int utilIncr = 1;
-
-	static LocalDate lastDate;
-	static LocalDate currDate;
-	static FinDateCalc calc = new FinDateCalc();
-	public static HashMap<Integer, ArrayList<Integer>> alpha = new HashMap<Integer, ArrayList<Integer>>();
-	public static HashMap<Integer, ArrayList<Integer>> beta = new HashMap<Integer, ArrayList<Integer>>();
+	static boolean debug = false;
 
 	/*
-	 * The following lines of code set the corresponding amounts for passive
-	 * income (passIncm), administration payment (admon), credit cards (credCards),
-	 *  utilities (util), salary (sal), mortgage, rate of inflation (infl) and
-	 *  the interest rate applied on the balance of a savings account (savInt). 
+	 * Creates one node for each day from startDate to endDate, and at least one
+	 * more than the first.
 	 */
-	public static double passIncm = 1000; // el 5
-	static double admon = -400; // el 10
-	static double credCards = -8000; // el 15
-	static double util = -35; // el 16	
-	static double sal = 12500; // el 22
-	static double mortgage = -1750; // el 23
-	static double infl = 0.05;
-	static double savInt = 0;
-
-	public static HashMap<String, Double> flows = new HashMap<String, Double>();
-	static int curr_year;
-	static int years;
-	static int startTime = 0;
-	static int size = 0;
-
 	public void CreateNodeDataBases(LocalDate startDate, LocalDate endDate) {
-		LocalDate currentDate = startDate;
-		Integer nodNum = 0;
-		networkNodes.put(nodNum, new Node(0, 0, 0, nodNum, currentDate));
-		nodeDates.put(currentDate, networkNodes.get(nodNum));
-		updateSourceAndSinkLists(currentDate);
-
-		currentDate = currentDate.plusDays(1);
-		nodNum += 1;
-		if (startDate.getMonthValue() <= 8) {
-			while (currentDate.isBefore(endDate)) {
-				while (currentDate.getMonthValue() <= 8 && currentDate.isBefore(endDate)) {
-					networkNodes.put(nodNum, new Node(0, 0, 0, nodNum, currentDate));
-					nodeDates.put(currentDate, networkNodes.get(nodNum));
-					updateSourceAndSinkLists(currentDate);
-					currentDate = currentDate.plusDays(1);
-					nodNum += 1;
-				}
-				while (currentDate.getMonthValue() > 8 && currentDate.isBefore(endDate)) {
-					networkNodes.put(nodNum, new Node(0, 0, 0, nodNum, currentDate));
-					nodeDates.put(currentDate, networkNodes.get(nodNum));
-					updateSourceAndSinkLists(currentDate);
-					currentDate = currentDate.plusDays(1);
-					nodNum += 1;
-				}
-			}
-		} else {
-			while (currentDate.isBefore(endDate)) {
-				while (currentDate.getMonthValue() > 8 && currentDate.isBefore(endDate)) {
-					networkNodes.put(nodNum, new Node(0, 0, 0, nodNum, currentDate));
-					nodeDates.put(currentDate, networkNodes.get(nodNum));
-					updateSourceAndSinkLists(currentDate);
-					currentDate = currentDate.plusDays(1);
-					nodNum += 1;
-				}
-				while (currentDate.getMonthValue() <= 8 && currentDate.isBefore(endDate)) {
-					networkNodes.put(nodNum, new Node(0, 0, 0, nodNum, currentDate));
-					nodeDates.put(currentDate, networkNodes.get(nodNum));
-					updateSourceAndSinkLists(currentDate);
-					currentDate = currentDate.plusDays(1);
-					nodNum += 1;
-				}
-			}
-		}
-
-		networkNodes.put(nodNum, new Node(0, 0, 0, nodNum, currentDate));
-		nodeDates.put(currentDate, networkNodes.get(nodNum));
-	}
-
-	private void updateSourceAndSinkLists(LocalDate date) {
-		/*
-		 * Updates the array list of source nodes
-		 */
-		if (date.getDayOfMonth() == pasIncDay || date.getDayOfMonth() == payDay)
-			sourceNodes.add(nodeDates.get(date));
-
-		/*
-		 * Updates the array list of sink nodes
-		 */
-		if (date.getDayOfMonth() == admPymt || // administración
-				date.getDayOfMonth() == credCardsPymt || // tdc's
-				date.getDayOfMonth() == utilitiesPymt || // agua y gas
-				date.getDayOfMonth() == mortgagePymt) // crédito hipotecario
-			sinkNodes.add(nodeDates.get(date));
+		RunMetrics.Phase phase = metrics.start("node_build");
+		LocalDate last = endDate.isAfter(startDate) ? endDate : startDate.plusDays(1);
+		nodes = new NodeStore(startDate, last);
+		phase.end();
 	}
 
+	/*
+	 * Sets the net flow of every day but the last one from the incomes and bills
+	 * of the scenario (see CashFlowSchedule), and lists the days with an income
+	 * (sourceNodes) and with a bill to pay (sinkNodes).
+	 */
 	public void setSinkAndSourceNodes() {
-		/*
-		 * sets source nodes
-		 */
-		for (Node nod : sourceNodes)
-			if (nod.getDate().getDayOfMonth() == pasIncDay)
-				// nod.setInflow(getCurrentRent(nod));
-				nod.setNetFlow(getCurrentPassInc(nod));
-			else {
-				nod.setNetFlow(getCurrentSalary(nod));
-				if (nod.getDate().getMonthValue() == 6
-						// || nod.getDate().getMonthValue() == 11 | nod.getDate().getMonthValue() == 12)
-						| nod.getDate().getMonthValue() == 12)
-					
-					nod.setNetFlow(nod.getNetFlow() + 0.5 * sal);
-				// System.out.println(nod.getNetFlow());
-			}
-
-		/*
-		 * sets sink nodes
-		 */
-		for (Node nod : sinkNodes) {
-			if (nod.getDate().getDayOfMonth() == admPymt)
-				nod.setNetFlow(admon);
-			if (nod.getDate().getDayOfMonth() == credCardsPymt)
-				nod.setNetFlow(getCurrentTdc(nod));
-			if (nod.getDate().getDayOfMonth() == utilitiesPymt)
-				nod.setNetFlow(getCurrentUtil(nod));
-			if (nod.getDate().getDayOfMonth() == mortgagePymt)
-				nod.setNetFlow(mortgage);
+		int last = nodes.size() - 1;
+		double[] netFlow = scenario.getSchedule().compile(start, nodes.date(last));
+		int sources = 0;
+		int sinks = 0;
+		for (int idx = 0; idx < last; idx++) {
+			nodes.netFlow[idx] = netFlow[idx];
+			if (netFlow[idx] > 0)
+				sources++;
+			else if (netFlow[idx] < 0)
+				sinks++;
 		}
-	}
-
-	private static double getCurrentSalary(Node node) {
-		if (curr_year != node.getDate().getYear())
-			curr_year = node.getDate().getYear();
-
-		if (node.getDate().getMonthValue() == salIncr)
-			sal = (1 + infl) * sal;
-
-		// String formattedSalary = currencyFormatter.format(sal);
-		// System.out.println("Salary for " + node.getDate() + " is " +
-		// formattedSalary);
-
-		return sal;
-	}
-
-	private static double getCurrentPassInc(Node node) {
-		if (curr_year != node.getDate().getYear())
-			curr_year = node.getDate().getYear();
-
-		if (node.getDate().getMonthValue() == passIncr)
-			passIncm = (1 + infl) * passIncm;
-
-		// String formattedRent = currencyFormatter.format(rent);
-		// System.out.println("Rent for " + node.getDate() + " is " + formattedRent);
-
-		return passIncm;
-	}
-
-	private static double getCurrentTdc(Node node) {
-		if (curr_year != node.getDate().getYear())
-			curr_year = node.getDate().getYear();
-
-		if (node.getDate().getMonthValue() == credCardIncr)
-			credCards = (1 + infl) * credCards;
-
-		// String formattedRent = currencyFormatter.format(rent);
-		// System.out.println("Rent for " + node.getDate() + " is " + formattedRent);
-
-		return credCards;
-
-	}
-
-	private static double getCurrentUtil(Node node) {
-		if (curr_year != node.getDate().getYear())
-			curr_year = node.getDate().getYear();
-
-		if (node.getDate().getMonthValue() == utilIncr)
-			util = (1 + infl) * util;
-
-		// String formattedRent = currencyFormatter.format(rent);
-		// System.out.println("Rent for " + node.getDate() + " is " + formattedRent);
-
-		return util;
+		sourceNodes = new int[sources];
+		sinkNodes = new int[sinks];
+		sources = 0;
+		sinks = 0;
+		for (int idx = 0; idx < last; idx++)
+			if (netFlow[idx] > 0)
+				sourceNodes[sources++] = idx;
+			else if (netFlow[idx] < 0)
+				sinkNodes[sinks++] = idx;
 	}
 
 	public void createNetworkArcs(int n) {
-		LocalDate t1 = start;
-		LocalDate to = t1.plusDays(1);
+		RunMetrics.Phase phase = metrics.start("arc_build");
 		LocalDate lastInv = FinDateCalc.getLastDayToInvest(end);
-		LocalDate t2 = FinDateCalc.addFinancialDays(start, 30);
-		int cycles = 0;
-		while (!t2.isAfter(end)) {
-			t1 = start.plusDays(cycles);
-			to = t1.plusDays(1);
-			while (!t1.isAfter(t2)) {
-				if (to.isBefore(t2)) {
-					intArcs.put(nodeDates.get(t1), new ArrayList<Node>());
-					while (to.isBefore(t2)) {
-						intArcs.get(nodeDates.get(t1)).add(nodeDates.get(to));
-						updateNDB(nodeDates.get(t1), nodeDates.get(to), befInt, aftInt);
-						to = to.plusDays(1);
-					}
-					t1 = t1.plusDays(1);
-					to = t1.plusDays(1);
-				} else {
-					t1 = t1.plusDays(1);
-
-				}
-			}
-			t2 = t2.plusDays(1);
-			cycles++;
-		}
-		t1 = lastInv;
-		to = t1.plusDays(1);
-		while (t1.isBefore(end)) {
-			intArcs.put(nodeDates.get(t1), new ArrayList<Node>());
-			while (!to.isAfter(end)) {
-				intArcs.get(nodeDates.get(t1)).add(nodeDates.get(to));
-				updateNDB(nodeDates.get(t1), nodeDates.get(to), befInt, aftInt);
-				to = to.plusDays(1);
-			}
-			t1 = t1.plusDays(1);
-			to = t1.plusDays(1);
-		}
-		t1 = start;
-		while (!t1.isAfter(lastInv)) {
-			arcs.put(nodeDates.get(t1), new ArrayList<Node>());
-			to = FinDateCalc.addFinancialDays(t1, 30);
-			while (!to.isAfter(end)) {
-				updateNDB(nodeDates.get(t1), nodeDates.get(to), before, after);
-				arcs.get(nodeDates.get(t1)).add(nodeDates.get(to));
-				to = to.plusDays(1);
-			}
-			t1 = t1.plusDays(1);
+		if (balanceChain)
+			intArcs = new ArcGraph(nodes.size(), 0).close();
+		else
+			createBalanceArcs(lastInv);
+		int last = nodes.index(end);
+		int lastFrom = Math.min(nodes.offset(lastInv), last);
+		int[] firstTo = new int[Math.max(0, lastFrom + 1)];
+		int count = 0;
+		for (int from = 0; from <= lastFrom; from++) {
+			firstTo[from] = nodes.offset(FinDateCalc.addFinancialDays(nodes.date(from), 30));
+			count += Math.max(0, last - firstTo[from] + 1);
 		}
+		arcs = new ArcGraph(nodes.size(), count);
+		for (int from = 0; from <= lastFrom; from++)
+			arcs.addRange(from, firstTo[from], last);
+		arcs.close();
+		phase.end();
 	}
 
-	private static void updateNDB(Node from, Node to, HashMap<Node, ArrayList<Node>> beta,
-			HashMap<Node, ArrayList<Node>> alpha) {
-		if (!beta.containsKey(to)) {
-			beta.put(to, new ArrayList<Node>());
-			beta.get(to).add(from);
-		} else {
-			if (!beta.get(to).contains(from))
-				beta.get(to).add(from);
-		}
-		if (!alpha.containsKey(from)) {
-			alpha.put(from, new ArrayList<Node>());
-			alpha.get(from).add(to);
-		} else {
-			if (!alpha.get(from).contains(to))
-				alpha.get(from).add(to);
+	/*
+	 * Balance arcs (intArcs) linking every day to the days less than 30 financial
+	 * days after the start after it (a window of as many calendar days as there
+	 * are between the start and 30 financial days later), and every day from the
+	 * last day to invest onwards to every later day.
+	 */
+	private void createBalanceArcs(LocalDate lastInv) {
+		int last = nodes.index(end);
+		int window = nodes.offset(FinDateCalc.addFinancialDays(start, 30));
+		int lastFrom = Math.max(0, nodes.offset(lastInv));
+		// Last node the balance arcs of each day reach, or the day itself when there are none
+		int[] lastTo = new int[last];
+		int count = 0;
+		for (int from = 0; from < last; from++) {
+			lastTo[from] = from;
+			if (from >= lastFrom)
+				lastTo[from] = last;
+			else if (window <= last)
+				lastTo[from] = Math.max(from, Math.min(last, window + from) - 1);
+			count += lastTo[from] - from;
 		}
+		intArcs = new ArcGraph(nodes.size(), count);
+		for (int from = 0; from < last; from++)
+			intArcs.addRange(from, from + 1, lastTo[from]);
+		intArcs.close();
 	}
 
+	/*
+	 * Whether readData maps the binary snapshot of the csv (see RateSnapshot)
+	 * instead of parsing it, writing the snapshot when it is missing or stale.
+	 */
+	static boolean rateSnapshot = true;
+
 	public static void readData(String path) throws IOException {
+		long startT = System.nanoTime();
+		long startBytes = RunMetrics.allocatedBytes();
+		if (rateSnapshot) {
+			RateTermStructure mapped = RateSnapshot.read(path);
+			if (mapped != null) {
+				interestRates = mapped;
+				rateLoadSeconds = (System.nanoTime() - startT) / 1_000_000_000.0;
+				rateLoadBytes = RunMetrics.allocatedBytes() - startBytes;
+				return;
+			}
+		}
 		String row;
 		String splitBy = ",";
 		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("M/d/yyyy");
 
 		File data = new File(path);
+		// Taken before reading, so that a snapshot never claims a later version of the csv
+		long length = data.length();
+		long modified = data.lastModified();
 		try (BufferedReader csvReader = new BufferedReader(new FileReader(data))) {
 
 			// Read the header (dates)
 			String header = csvReader.readLine();
 			if (header != null) {
-				String[] dates = header.split(splitBy);
+				String[] columns = header.split(splitBy);
+				LocalDate[] dates = new LocalDate[columns.length - 4];
+				for (int i = 4; i < columns.length; i++)
+					dates[i - 4] = LocalDate.parse(columns[i], formatter);
+
+				ArrayList<int[]> bounds = new ArrayList<>();
+				ArrayList<double[]> rows = new ArrayList<>();
 
 				// Parse the rest of the rows
 				while ((row = csvReader.readLine()) != null) {
@@ -371,34 +225,109 @@ public class CFO
 					int dLinf = Integer.parseInt(csvData[0]);
 					int dLsup = Integer.parseInt(csvData[1]);
 
-					// Iterate over interest rates and dates
-					for (int i = 4; i < csvData.length; i++) {
-						LocalDate date = LocalDate.parse(dates[i], formatter);
-						double rate = Double.parseDouble(csvData[i]);
+					// Interest rates of the band for each date
+					double[] rates = new double[dates.length];
+					for (int i = 4; i < csvData.length; i++)
+						rates[i - 4] = Double.parseDouble(csvData[i]);
+					bounds.add(new int[] { dLinf, dLsup });
+					rows.add(rates);
+				}
 
-						// Add interest rate to the map for each duration in the range
-						for (int duration = dLinf; duration <= dLsup; duration++) {
-							interestRates.computeIfAbsent(duration, k -> new HashMap<>()).put(date, rate);
-						}
-					}
+				int[] lower = new int[bounds.size()];
+				int[] upper = new int[bounds.size()];
+				for (int i = 0; i < bounds.size(); i++) {
+					lower[i] = bounds.get(i)[0];
+					upper[i] = bounds.get(i)[1];
 				}
+				interestRates = new RateTermStructure(lower, upper, dates, rows.toArray(new double[0][]));
+				rateLoadSeconds = (System.nanoTime() - startT) / 1_000_000_000.0;
+				rateLoadBytes = RunMetrics.allocatedBytes() - startBytes;
+				if (rateSnapshot)
+					RateSnapshot.write(path, interestRates, length, modified);
 			}
 		} catch (FileNotFoundException e) {
 			e.printStackTrace();
 		}
 	}
 
-	public void optimizeCashFlow() throws IOException {
-		
-		try (IloCplex smartSaver = new IloCplex()) {
+	// Threads CPLEX may use, zero to leave it to CPLEX
+	int solverThreads = 0;
+	// Whether the plan is also written to a binary file (see PlanWriter)
+	boolean binaryPlan = false;
+	// Whether investments are semi-continuous variables instead of either or constraints
+	boolean semiContinuous = false;
+	/*
+	 * Whether money is kept in balance through one arc from each day to the next
+	 * instead of the arcs of intArcs, which link each day to the following 30
+	 * (see createBalanceArcs). Balance arcs neither gain nor lose money, so an
+	 * amount kept from one day to another through the days between them is the
+	 * same plan with far fewer variables. It must be set before createNetworkArcs.
+	 */
+	boolean balanceChain = false;
+	// Networks and models built before, if any (see buildNetwork and ModelCache)
+	ModelCache modelCache;
+	// Key of this network in modelCache, once buildNetwork has looked it up
+	String networkKey;
+	// Whether the arcs are only given numbered, by modelCache or withRates, with no adjacency lists
+	private boolean numberedOnly = false;
+	// Optimal plans found before, if any (see SolutionCache)
+	SolutionCache solutionCache;
+	// Whether the solvers start from the plan of HeuristicPlanner when there is no cached one
+	boolean heuristicStart = true;
+	// Seconds the solvers may take, returning the best plan found by then; zero for no limit
+	double deadline = 0;
 
-			HashMap<String, IloNumVar> xVars = new HashMap<>();
-			HashMap<String, IloNumVar> yVars = new HashMap<>();
-			HashMap<String, IloIntVar> zVars = new HashMap<>();
-			
-			int priority = 0;
-			// Set the branching direction mode to prioritize user-defined priorities
-			smartSaver.setParam(IloCplex.Param.MIP.Strategy.VariableSelect, 3);
+	/*
+	 * Creates the arcs of the network with their coefficients and presolves it
+	 * when presolve is set, or loads all of that from modelCache when it holds
+	 * the network built from the same inputs, saving it there otherwise. The
+	 * nodes must have been created and given their net flows.
+	 */
+	public void buildNetwork(boolean presolve) throws IOException {
+		if (modelCache != null && modelCache.loadNetwork(this, presolve))
+			return;
+		createNetworkArcs(nodes.size() - 1);
+		setArcsCoeff();
+		if (presolve)
+			presolve();
+		if (modelCache != null) {
+			indexArcs();
+			modelCache.saveNetwork(this);
+		}
+	}
+
+	// Arcs, coefficients and bounds given by ModelCache.loadNetwork
+	void cachedNetwork(double[] bound) {
+		numberedOnly = true;
+		invBound = bound;
+		setSizeMetrics();
+	}
+
+	/*
+	 * Builds the model in smartSaver and solves it with the settings used in
+	 * production, then writes the resulting plan (see writeCashFlowCSV). The
+	 * solver parameters are the ones found by SolverTuner for a network of about
+	 * the same size, if any. Returns the objective, or NaN when no plan was
+	 * found.
+	 */
+	public double optimizeCashFlow() throws IOException {
+		double objective = replayCachedPlan(true);
+		if (!Double.isNaN(objective))
+			return objective;
+		indexArcs();
+		try (IloCplex smartSaver = new IloCplex()) {
+			Model model = modelCache == null ? null : modelCache.loadModel(this, smartSaver);
+			if (model == null) {
+				model = buildModel(smartSaver);
+				if (modelCache != null)
+					modelCache.saveModel(this, smartSaver);
+			}
+			configure(smartSaver);
+			double[] start = solutionCache == null ? null : solutionCache.start(this, true);
+			if (start == null && heuristicStart)
+				start = heuristicStart(true);
+			if (start != null)
+				SolutionCache.addMIPStart(smartSaver, model, start);
 			
 			// Set CPLEX to use the network simplex method
             // smartSaver.setParam(IloCplex.Param.RootAlgorithm, IloCplex.Algorithm.Network);
@@ -406,320 +335,690 @@ public class CFO
             // Set CPLEX to use the dual simplex method
             // smartSaver.setParam(IloCplex.Param.RootAlgorithm, IloCplex.Algorithm.Dual);
 
-			// Iterate over the arcs map
-			for (Node dayFrom : arcs.keySet()) {
-				for (Node dayTo : arcs.get(dayFrom)) {
-					// Create the variable names based on the arc
-					String amount_to_invest = "x_" + dayFrom.getIndex() + "_" + dayTo.getIndex();
-					String invest_or_not = "z_" + dayFrom.getIndex() + "_" + dayTo.getIndex();
-
-					// Create the variables and store them in the maps
-					IloNumVar xVar = smartSaver.numVar(0, Double.MAX_VALUE, amount_to_invest);
-					IloIntVar zVar = smartSaver.intVar(0, 1, invest_or_not);
-					
-					// Set priority based on the difference in node indices
-			        // priority = dayTo.getIndex() - dayFrom.getIndex();
-
-			        // Add the variables to your model before setting the priority
-			        smartSaver.add(xVar);
-			        smartSaver.add(zVar);
-
-			        // Set the branching priority for zVar
-			        // smartSaver.setPriority(zVar, priority);
-					
-					// Adds the just created variables to their corresponding hashmaps
-					xVars.put(amount_to_invest, xVar);
-					zVars.put(invest_or_not, zVar);
-				}
+			FirstIncumbent firstIncumbent = new FirstIncumbent(metrics, smartSaver.getCplexTime());
+			smartSaver.use(firstIncumbent);
+			long startT = System.nanoTime();
+			RunMetrics.Phase phase = metrics.start("solve");
+			boolean solved = smartSaver.solve();
+			phase.end();
+			long endT = System.nanoTime();
+			System.out.println((endT - startT) / 1_000_000_000.0 + " seconds to solve the problem");
+			System.out.println("Cplex status is: " + smartSaver.getCplexStatus());
+			metrics.setStatus(smartSaver.getCplexStatus().toString());
+			metrics.set("mip_nodes", smartSaver.getNnodes64());
+
+			if (solved) {
+				objective = smartSaver.getObjValue();
+				metrics.set("objective", objective);
+				metrics.set("mip_gap", smartSaver.getMIPRelativeGap());
+				PlanWriter plan = writeCashFlowCSV(smartSaver.getValues(model.x), smartSaver.getValues(model.y),
+						objective);
+				if (solutionCache != null && smartSaver.getStatus() == IloCplex.Status.Optimal)
+					solutionCache.store(this, true, plan);
+			} else
+				System.out.println("No solution found.");
+			metrics.write(getOutputName("cfo"));
+
+            // Dispose of the CPLEX object
+            smartSaver.end();
+		} catch (IloException e) {
+			// TODO Auto-generated catch block
+			e.printStackTrace();
+		}
+		return objective;
+	}
+
+	/*
+	 * Solves the model with CPLEX and the settings of configure, starting from
+	 * the investments of start when given, and returns the plan found instead of
+	 * writing it, for the callers that put several solves together (see
+	 * WindowDecomposition). The values of the result are numbered as in
+	 * indexArcs.
+	 */
+	JavaFlowSolver.Result solveModel(double[] start) {
+		JavaFlowSolver.Result result = new JavaFlowSolver.Result();
+		indexArcs();
+		try (IloCplex smartSaver = new IloCplex()) {
+			Model model = buildModel(smartSaver);
+			configure(smartSaver);
+			smartSaver.setOut(null);
+			if (start != null)
+				SolutionCache.addMIPStart(smartSaver, model, start);
+			long startT = System.nanoTime();
+			boolean solved = smartSaver.solve();
+			result.seconds = (System.nanoTime() - startT) / 1_000_000_000.0;
+			result.status = smartSaver.getCplexStatus().toString();
+			result.nodes = (int) smartSaver.getNnodes64();
+			if (solved) {
+				result.objective = smartSaver.getObjValue();
+				result.bestBound = smartSaver.getBestObjValue();
+				result.x = smartSaver.getValues(model.x);
+				result.y = smartSaver.getValues(model.y);
 			}
+			smartSaver.end();
+		} catch (IloException e) {
+			e.printStackTrace();
+			result.status = "Error: " + e;
+		}
+		return result;
+	}
 
-			for (Node dayFrom : intArcs.keySet()) {
-				for (Node dayTo : intArcs.get(dayFrom)) {
-					// Create the variable names based on the arc
-					String amount_in_balance = "y_" + dayFrom.getIndex() + "_" + dayTo.getIndex();
+	/*
+	 * Either or constraints of an investment x: when z is zero so is x, when it
+	 * is one x is between minInv and bound, the most that can be invested on its
+	 * day (see InvestmentBounds), which is much less than M for most of them.
+	 */
+	static void addEitherOr(IloCplex smartSaver, IloNumVar x, IloIntVar z, double bound) throws IloException {
+		IloLinearNumExpr inv_or_not_1 = smartSaver.linearNumExpr();
+		IloLinearNumExpr inv_or_not_2 = smartSaver.linearNumExpr();
+		inv_or_not_1.addTerm(1, x);
+		inv_or_not_2.addTerm(1, x);
+		inv_or_not_1.addTerm(-bound, z);
+		inv_or_not_2.addTerm(-minInv, z);
+		smartSaver.addGe(0, inv_or_not_1);
+		smartSaver.addLe(0, inv_or_not_2);
+	}
 
-					// Create the variables and store them in the maps
-					IloNumVar yVar = smartSaver.numVar(0, Double.MAX_VALUE, amount_in_balance);
-					// System.out.println(yVar);
-					
-					smartSaver.add(yVar);
+	/*
+	 * Investment that is either zero or between minInv and bound, as a
+	 * semi-continuous variable instead of the either or constraints. It can only
+	 * be zero when bound is below minInv.
+	 */
+	static IloNumVar investmentVar(IloCplex smartSaver, double bound, String name) throws IloException {
+		if (bound < minInv)
+			return name == null ? smartSaver.numVar(0, 0) : smartSaver.numVar(0, 0, name);
+		if (name == null)
+			return smartSaver.semiContVar(minInv, bound, IloNumVarType.Float);
+		return smartSaver.semiContVar(minInv, bound, IloNumVarType.Float, name);
+	}
 
-					yVars.put(amount_in_balance, yVar);
-				}
+	/*
+	 * Sets the parameters used in production: the ones found by SolverTuner for a
+	 * network of about the same size, if any, the threads of solverThreads and
+	 * the time limit of deadline.
+	 */
+	void configure(IloCplex smartSaver) throws IloException {
+		SolverConfig tuned = SolverTuner.load(nodes.size(), invFrom.length + balFrom.length);
+		if (tuned != null) {
+			System.out.println("Using the tuned solver parameters " + tuned);
+			tuned.apply(smartSaver);
+		} else
+			// Set the branching direction mode to prioritize user-defined priorities
+			smartSaver.setParam(IloCplex.Param.MIP.Strategy.VariableSelect, 3);
+		if (solverThreads > 0)
+			smartSaver.setParam(IloCplex.Param.Threads, solverThreads);
+		if (deadline > 0)
+			smartSaver.setParam(IloCplex.Param.TimeLimit, deadline);
+	}
+
+	/*
+	 * Records in the metrics how long CPLEX took to find its first incumbent,
+	 * measured from start on its own clock.
+	 */
+	static class FirstIncumbent extends IloCplex.MIPInfoCallback
+	{
+		RunMetrics metrics;
+		final double start;
+
+		FirstIncumbent(RunMetrics m, double s)
+		{
+			metrics = m;
+			start = s;
+		}
+
+		@Override
+		protected void main() throws IloException {
+			if (hasIncumbent())
+				metrics.setFirst("first_incumbent_seconds", getCplexTime() - start);
+		}
+	}
+
+	/*
+	 * Variables and expressions of a model built by buildModel. The variables are
+	 * kept in arrays indexed by the number of their arc (see indexArcs): x is the
+	 * amount to invest, z whether to invest or not and y the amount kept in
+	 * balance. consFlow holds the flow constraint of each node but the last one.
+	 */
+	static class Model
+	{
+		IloNumVar[] x;
+		IloIntVar[] z;
+		IloNumVar[] y;
+		IloRange[] consFlow;
+		IloLinearNumExpr objective;
+	}
+
+	/*
+	 * Adds the variables, constraints and objective of the cash flow optimization
+	 * problem to smartSaver. The arcs must have been numbered with indexArcs. As
+	 * it only reads the network, several models can be built at the same time.
+	 */
+	Model buildModel(IloCplex smartSaver) throws IloException {
+		long buildStart = System.nanoTime();
+		RunMetrics.Phase phase = metrics.start("model_assembly");
+		int nInv = invFrom.length;
+		int nBal = balFrom.length;
+		int last = nodes.size() - 1;
+		double[] bound = getInvestmentBounds();
+
+		/*
+		 * Names are only given to the variables when debugging.
+		 */
+		IloNumVar[] xVars;
+		IloIntVar[] zVars;
+		IloNumVar[] yVars;
+		if (debug) {
+			String[] xNames = new String[nInv];
+			String[] zNames = new String[nInv];
+			String[] yNames = new String[nBal];
+			for (int a = 0; a < nInv; a++) {
+				xNames[a] = "x_" + invFrom[a] + "_" + invTo[a];
+				zNames[a] = "z_" + invFrom[a] + "_" + invTo[a];
+			}
+			for (int a = 0; a < nBal; a++)
+				yNames[a] = "y_" + balFrom[a] + "_" + balTo[a];
+			if (semiContinuous) {
+				xVars = new IloNumVar[nInv];
+				for (int a = 0; a < nInv; a++)
+					xVars[a] = investmentVar(smartSaver, bound[a], xNames[a]);
+				zVars = null;
+			} else {
+				xVars = smartSaver.numVarArray(nInv, 0, Double.MAX_VALUE, xNames);
+				zVars = smartSaver.boolVarArray(nInv, zNames);
+			}
+			yVars = smartSaver.numVarArray(nBal, 0, Double.MAX_VALUE, yNames);
+		} else {
+			if (semiContinuous) {
+				xVars = new IloNumVar[nInv];
+				for (int a = 0; a < nInv; a++)
+					xVars[a] = investmentVar(smartSaver, bound[a], null);
+				zVars = null;
+			} else {
+				xVars = smartSaver.numVarArray(nInv, 0, Double.MAX_VALUE);
+				zVars = smartSaver.boolVarArray(nInv);
 			}
+			yVars = smartSaver.numVarArray(nBal, 0, Double.MAX_VALUE);
+		}
+		smartSaver.add(xVars);
+		if (zVars != null)
+			smartSaver.add(zVars);
+		smartSaver.add(yVars);
 
-			int numVars = (networkNodes.size() * (networkNodes.size() - 1)) / 2;
-			IloLinearNumExpr objectiveFunction = smartSaver.linearNumExpr();
-			IloLinearNumExpr[] consflow = new IloLinearNumExpr[networkNodes.size()];
-			IloLinearNumExpr[] inv_or_not_1 = new IloLinearNumExpr[numVars];
-			IloLinearNumExpr[] inv_or_not_2 = new IloLinearNumExpr[numVars];
-
-			for (int idx = 0; idx < networkNodes.size() - 1; idx++) {
-				Node nod = networkNodes.get(idx);
-				consflow[nod.getIndex()] = smartSaver.linearNumExpr();
-				/*
-				 * Add the variables for which no investment can be made as there are less than
-				 * 30 financial days between these dates and the startDate. First it adds up the
-				 * outgoing flows and then it substracts the incoming flows, each multiplied by
-				 * the rate of interest that corresponds to a savings account; which for the
-				 * case of Bancolombia, according to google, 0.1% per year depending on the
-				 * balance. For modeling simplicity, it will be taken as a flat rate independent
-				 * of the balance.
-				 */
-
-				if (aftInt.keySet().contains(nod)) {
-					for (Node to : aftInt.get(nod))
-						consflow[nod.getIndex()].addTerm(1, yVars.get("y_" + nod.getIndex() + "_" + to.getIndex()));
-				}
-				if (befInt.keySet().contains(nod)) {
-					for (Node from : befInt.get(nod))
-						consflow[nod.getIndex()].addTerm(-1, yVars.get("y_" + from.getIndex() + "_" + nod.getIndex()));
+		IloLinearNumExpr objectiveFunction = smartSaver.linearNumExpr();
+		IloLinearNumExpr[] consflow = new IloLinearNumExpr[last];
+		for (int idx = 0; idx < last; idx++)
+			consflow[idx] = smartSaver.linearNumExpr();
 
-				}
-				/*
-				 * Adds the variables for which an investment can be made, which are those
-				 * representing the arcs linking nodes 30 or more financial days appart.
-				 */
-				if (after.keySet().contains(nod)) {
-					for (Node to : after.get(nod))
-						consflow[nod.getIndex()].addTerm(1, xVars.get("x_" + nod.getIndex() + "_" + to.getIndex()));
-				}
-				if (before.keySet().contains(nod)) {
-					for (Node from : before.get(nod))
-						consflow[nod.getIndex()].addTerm(-arcsCoeff.get(from).get(nod),
-								xVars.get("x_" + from.getIndex() + "_" + nod.getIndex()));
-				}
+		/*
+		 * Each arc takes its amount out of the node where it starts and puts it,
+		 * multiplied by its coefficient, in the node where it ends. For the balance
+		 * arcs, which link nodes less than 30 financial days appart, the coefficient
+		 * is the rate of interest that corresponds to a savings account; which for
+		 * the case of Bancolombia, according to google, 0.1% per year depending on
+		 * the balance. For modeling simplicity, it will be taken as a flat rate
+		 * independent of the balance (and equal to one). The investment arcs link
+		 * nodes 30 or more financial days appart.
+		 * 
+		 * The objective function is composed by the sum of the money received the
+		 * last day of the horizon planning period; which is the sum of all the flows
+		 * arriving at the last node from all the previous nodes.
+		 */
+		for (int a = 0; a < nInv; a++) {
+			double coeff = arcsCoeff.get(invFrom[a], invTo[a]);
+			consflow[invFrom[a]].addTerm(1, xVars[a]);
+			if (invTo[a] < last)
+				consflow[invTo[a]].addTerm(-coeff, xVars[a]);
+			else
+				objectiveFunction.addTerm(coeff, xVars[a]);
+		}
+		for (int a = 0; a < nBal; a++) {
+			consflow[balFrom[a]].addTerm(1, yVars[a]);
+			if (balTo[a] < last)
+				consflow[balTo[a]].addTerm(-1, yVars[a]);
+			else
+				objectiveFunction.addTerm(1, yVars[a]);
+		}
+
+		IloRange[] consFlow = new IloRange[last];
+		for (int idx = 0; idx < last; idx++)
+			consFlow[idx] = smartSaver.addEq(nodes.netFlow[idx], consflow[idx], "consFlow[" + idx + "]");
+
+		/*
+		 * Defines the constraints either or for the investment
+		 */
+		if (zVars != null)
+			for (int a = 0; a < nInv; a++)
+				addEitherOr(smartSaver, xVars[a], zVars[a], bound[a]);
+
+		smartSaver.addMaximize(objectiveFunction);
+		phase.end();
+		int variables = (zVars == null ? nInv : 2 * nInv) + nBal;
+		int constraints = zVars == null ? last : last + 2 * nInv;
+		metrics.set("variables", variables);
+		metrics.set("constraints", constraints);
+		System.out.println("Model with " + variables + " variables and " + constraints
+				+ " constraints built in " + (System.nanoTime() - buildStart) / 1_000_000_000.0 + " seconds");
+
+		Model model = new Model();
+		model.x = xVars;
+		model.z = zVars;
+		model.y = yVars;
+		model.consFlow = consFlow;
+		model.objective = objectiveFunction;
+		return model;
+	}
+	
+	/*
+	 * Numbers the investment arcs (arcs) and the balance arcs (intArcs) in the
+	 * order of their start day and then of their end day, which is the order of
+	 * their ArcGraph, so invTo and balTo are the heads of the graphs. The arrays
+	 * hold the indices of the nodes at both ends of each arc; solvers report the
+	 * values of the arcs in this same order.
+	 */
+	int[] invFrom, invTo, balFrom, balTo;
+	// Most that can be invested in each investment arc (see InvestmentBounds)
+	double[] invBound;
+
+	// Graphs numbered by the last call to indexArcs, which is not repeated while they stay the same
+	private ArcGraph numberedArcs;
+	private ArcGraph numberedIntArcs;
+
+	public void indexArcs() {
+		if (numberedOnly || (invFrom != null && numberedArcs == arcs && numberedIntArcs == intArcs))
+			return;
+		numberedArcs = arcs;
+		numberedIntArcs = intArcs;
+		invBound = null;
+		if (longest != null)
+			indexHorizonArcs();
+		else {
+			invFrom = arcs.tails();
+			invTo = arcs.head;
+			balFrom = intArcs.tails();
+			balTo = intArcs.head;
+		}
+		if (balanceChain) {
+			int last = nodes.size() - 1;
+			balFrom = new int[last];
+			balTo = new int[last];
+			for (int idx = 0; idx < last; idx++) {
+				balFrom[idx] = idx;
+				balTo[idx] = idx + 1;
 			}
+		}
+		setSizeMetrics();
+	}
+
+	/*
+	 * Bounds of the investment arcs numbered by indexArcs, worked out the first
+	 * time they are needed.
+	 */
+	synchronized double[] getInvestmentBounds() {
+		if (invBound == null) {
+			long startT = System.nanoTime();
+			InvestmentBounds bounds = new InvestmentBounds(this);
+			invBound = bounds.compute();
+			System.out.println("Investment bounds worked out in " + (System.nanoTime() - startT) / 1_000_000_000.0
+					+ " seconds, " + bounds.belowMinimum + " of " + invBound.length + " investments can never reach "
+					+ minInv);
+		}
+		return invBound;
+	}
+
+	private void setSizeMetrics() {
+		metrics.set("nodes", nodes.size());
+		metrics.set("investment_arcs", invFrom.length);
+		metrics.set("balance_arcs", balFrom.length);
+	}
+
+	/*
+	 * Network for a shorter horizon ending on e, built on top of this one instead
+	 * of from scratch. Its nodes are the first days of this network, which keep
+	 * their net flows, and it shares the arc coefficients. Its investment arcs
+	 * are the ones of this network ending on or before e. Its balance arcs are
+	 * the ones of this network ending before e, except from the last day to
+	 * invest onwards, where every day is linked to every later day up to e, as
+	 * createNetworkArcs does for the end of the horizon. The view has no arcs or
+	 * intArcs graphs; its arcs are only numbered, by indexArcs.
+	 */
+	CFO longest;
+
+	public CFO horizon(LocalDate e) {
+		if (e.isAfter(end) || FinDateCalc.getFinDaysBetween(start, e) < 30)
+			throw new IllegalArgumentException("Horizon ending on " + e + " is not within 30 financial days of " + start
+					+ " and " + end);
+		CFO view = new CFO(start, e, rates, scenario);
+		view.longest = this;
+		view.arcsCoeff = arcsCoeff;
+		view.balanceChain = balanceChain;
+		int last = nodes.index(e);
+		view.nodes = nodes.prefix(last + 1);
+		view.sourceNodes = before(sourceNodes, last);
+		view.sinkNodes = before(sinkNodes, last);
+		return view;
+	}
 
-			for (int idx = 0; idx < networkNodes.size() - 1; idx++) {
-				Node nod = networkNodes.get(idx);
-				smartSaver.addEq(nod.getNetFlow(), consflow[nod.getIndex()], "consFlow[" + nod.getIndex() + "]");
+	// The nodes of a sorted list that come before last
+	private static int[] before(int[] list, int last) {
+		int n = 0;
+		while (n < list.length && list[n] < last)
+			n++;
+		return Arrays.copyOf(list, n);
+	}
+
+	/*
+	 * The same network with the coefficients of the rates in force on r, as if
+	 * r were the date of the rates, to solve it under other rates (see
+	 * Backtest). It shares the nodes and the numbered arcs of this network, which
+	 * must have been numbered by indexArcs, and has its own coefficients and
+	 * bounds. durations holds the financial days of each investment arc.
+	 */
+	public CFO withRates(LocalDate r, int[] durations) {
+		CFO view = new CFO(start, end, r, scenario);
+		view.nodes = nodes;
+		view.sourceNodes = sourceNodes;
+		view.sinkNodes = sinkNodes;
+		view.invFrom = invFrom;
+		view.invTo = invTo;
+		view.balFrom = balFrom;
+		view.balTo = balTo;
+		view.numberedOnly = true;
+		view.balanceChain = balanceChain;
+		view.semiContinuous = semiContinuous;
+		view.binaryPlan = binaryPlan;
+		view.deadline = deadline;
+		view.heuristicStart = heuristicStart;
+		view.outputTag = "rates_" + r;
+		RunMetrics.Phase phase = view.metrics.start("coefficient_build");
+		view.arcsCoeff = new ArcCoefficients(r, nodes.size());
+		for (int a = 0; a < invFrom.length; a++)
+			view.arcsCoeff.put(invFrom[a], invTo[a], view.arcsCoeff.forDuration(durations[a]));
+		phase.end();
+		view.setSizeMetrics();
+		return view;
+	}
+
+	/*
+	 * The same network with only the investment arcs numbered in arcs, to solve
+	 * the problem for them with the other investments fixed (see
+	 * WindowDecomposition). netFlow holds the net flow of each day once the
+	 * fixed investments are taken out of it. It shares the balance arcs and the
+	 * coefficients of this network, which must have been numbered by indexArcs,
+	 * and the results of its solvers are numbered as in arcs.
+	 */
+	public CFO restrictedTo(int[] arcs, double[] netFlow) {
+		double[] bound = getInvestmentBounds();
+		CFO view = new CFO(start, end, rates, scenario);
+		view.nodes = nodes.withNetFlow(netFlow);
+		view.sourceNodes = sourceNodes;
+		view.sinkNodes = sinkNodes;
+		view.arcsCoeff = arcsCoeff;
+		view.invFrom = new int[arcs.length];
+		view.invTo = new int[arcs.length];
+		view.invBound = new double[arcs.length];
+		for (int k = 0; k < arcs.length; k++) {
+			view.invFrom[k] = invFrom[arcs[k]];
+			view.invTo[k] = invTo[arcs[k]];
+			view.invBound[k] = bound[arcs[k]];
+		}
+		view.balFrom = balFrom;
+		view.balTo = balTo;
+		view.numberedOnly = true;
+		view.balanceChain = balanceChain;
+		view.semiContinuous = semiContinuous;
+		view.deadline = deadline;
+		view.setSizeMetrics();
+		return view;
+	}
+
+	private void indexHorizonArcs() {
+		if (longest.invFrom == null)
+			longest.indexArcs();
+		int last = nodes.size() - 1;
+		int lastInv = nodes.index(FinDateCalc.getLastDayToInvest(end));
+
+		int nInv = 0;
+		for (int a = 0; a < longest.invTo.length; a++)
+			if (longest.invTo[a] <= last)
+				nInv++;
+		invFrom = new int[nInv];
+		invTo = new int[nInv];
+		nInv = 0;
+		for (int a = 0; a < longest.invTo.length; a++)
+			if (longest.invTo[a] <= last) {
+				invFrom[nInv] = longest.invFrom[a];
+				invTo[nInv] = longest.invTo[a];
+				nInv++;
 			}
 
-			/*
-			 * Defines the constraints either or for the investment
-			 */
-			int i = 0;
-			inv_or_not_1[i] = smartSaver.linearNumExpr();
-			inv_or_not_2[i] = smartSaver.linearNumExpr();
-			for (Node m : after.keySet())
-				for (Node n : after.get(m)) {
-					inv_or_not_1[i].addTerm(1, xVars.get("x_" + m.getIndex() + "_" + n.getIndex()));
-					inv_or_not_2[i].addTerm(-1, xVars.get("x_" + m.getIndex() + "_" + n.getIndex()));
-					inv_or_not_1[i].addTerm(-M, zVars.get("z_" + m.getIndex() + "_" + n.getIndex()));
-					inv_or_not_2[i].addTerm(M, zVars.get("z_" + m.getIndex() + "_" + n.getIndex()));
-					smartSaver.addGe(0, inv_or_not_1[i]);
-					smartSaver.addGe(M - 500000, inv_or_not_2[i]);
-					i++;
-					inv_or_not_1[i] = smartSaver.linearNumExpr();
-					inv_or_not_2[i] = smartSaver.linearNumExpr();
-				}
-			/*
-			 * Defines the objective function which is composed by the sum of the money
-			 * received the last day of the horizon planning period; which is the sum of all
-			 * the flows arriving at the last node from all the previous nodes.
-			 */
-			Node endPlan = nodeDates.get(end);
-			// System.out.println(nodeDates.get(endDate).getIndex());
-			for (Node n : before.get(endPlan))
-				objectiveFunction.addTerm(arcsCoeff.get(n).get(endPlan),
-						xVars.get("x_" + n.getIndex() + "_" + endPlan.getIndex()));
-			if (befInt.containsKey(endPlan))
-				for (Node n : befInt.get(endPlan))
-					objectiveFunction.addTerm(1, yVars.get("y_" + n.getIndex() + "_" + endPlan.getIndex()));
-
-			smartSaver.addMaximize(objectiveFunction);
-			
-			// Possible values for each parameter
-            int[] branchingStrategies = {0, 1, 2};  // e.g., 0: auto, 1: down, 2: up
-            int[] nodeSelections = {0, 1, 2};       // 0: depth-first, 1: best-bound, 2: best-estimate
-            int[] cutStrategies = {-1, 0, 1, 2, 3}; // -1: none, 0: auto, 1+: more aggressive cuts
-            int[] heuristicFreqs = {-1, 0, 5, 10};  // -1: disable, 0: auto, 5, 10: every N nodes
-            int[] threadCounts = {1, 2, 4};         // Number of threads to use
-            double[] mipgaps = {0.01, 0.001, 0.0001}; // Tolerance for optimality gap
-            int[] mipEmphasis = {0, 1, 2, 3, 4};    // 0: balanced, 1: hidden feasible, etc.
-            boolean[] presolveSettings = {true, false}; // Enable/Disable presolve
-
-            // Iterate over all combinations
-            for (int branch : branchingStrategies) {
-                for (int nodeSel : nodeSelections) {
-                    for (int cut : cutStrategies) {
-                        for (int heuristicFreq : heuristicFreqs) {
-                            for (int threads : threadCounts) {
-                                for (double mipgap : mipgaps) {
-                                    for (int emphasis : mipEmphasis) {
-                                        for (boolean presolve : presolveSettings) {
-
-                                            // Set the parameters with correct paths
-                                            smartSaver.setParam(IloCplex.Param.MIP.Strategy.Branch, branch);
-                                            smartSaver.setParam(IloCplex.Param.MIP.Strategy.NodeSelect, nodeSel);  // Corrected
-                                            smartSaver.setParam(IloCplex.Param.MIP.Cuts.Gomory, cut);
-                                            smartSaver.setParam(IloCplex.Param.MIP.Strategy.HeuristicFreq, heuristicFreq);
-                                            smartSaver.setParam(IloCplex.Param.Threads, threads);
-                                            smartSaver.setParam(IloCplex.Param.MIP.Tolerances.MIPGap, mipgap);
-                                            smartSaver.setParam(IloCplex.Param.MIP.Display, emphasis);  // Corrected
-                                            smartSaver.setParam(IloCplex.Param.Preprocessing.Presolve, presolve);
-                                            double startTime = System.nanoTime();
-                                            double duration = 0;
-                                            
-                                            // Run the model
-                                            if (smartSaver.solve()) {
-                                            	double endTime = System.nanoTime();
-                            					// Calculate the time taken in nanoseconds
-                            					duration = endTime - startTime;
-
-                            					// Convert the duration to milliseconds (optional)
-                            					duration = duration / 1_000_000_000.0;
-
-                                                double objectiveValue = smartSaver.getObjValue();
-                                                System.out.println("Objective: " + objectiveValue);
-                                            } else {
-                                                System.out.println("No solution found with current parameters.");
-                                            }
-                                            // Log or store results for this combination
-                                            //logResults(branch, nodeSel, cut, heuristicFreq, threads, mipgap, emphasis, presolve, duration);
-                                            logResultsToCSV(branch, nodeSel, cut, heuristicFreq, threads, mipgap, emphasis, presolve, duration);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-            
-            
+		/*
+		 * Arcs are numbered by start day, so the ones before lastInv come first.
+		 * createNetworkArcs adds none of them when 30 financial days from the start
+		 * fall after the end, which may happen when the start is a 31st.
+		 */
+		int kept = FinDateCalc.addFinancialDays(start, 30).isAfter(end) ? 0 : lastInv;
+		int nBal = (last - lastInv) * (last - lastInv + 1) / 2;
+		for (int a = 0; a < longest.balTo.length && longest.balFrom[a] < kept; a++)
+			if (longest.balTo[a] < last)
+				nBal++;
+		balFrom = new int[nBal];
+		balTo = new int[nBal];
+		nBal = 0;
+		for (int a = 0; a < longest.balTo.length && longest.balFrom[a] < kept; a++)
+			if (longest.balTo[a] < last) {
+				balFrom[nBal] = longest.balFrom[a];
+				balTo[nBal] = longest.balTo[a];
+				nBal++;
+			}
+		for (int from = lastInv; from < last; from++)
+			for (int to = from + 1; to <= last; to++) {
+				balFrom[nBal] = from;
+				balTo[nBal] = to;
+				nBal++;
+			}
+	}
 
-            // Dispose of the CPLEX object
-            smartSaver.end();
-			/*
-			long startT = System.nanoTime();
-			smartSaver.solve();
-			long endT = System.nanoTime();
-			System.out.println(endT - startT + " seconds to solve the problem");
-			System.out.println("Cplex status is: " + smartSaver.getCplexStatus());
-			System.out.println("Cplex time is: " + smartSaver.getCplexTime());
+	/*
+	 * cfo stands for cash flow optimization. This code creates a csv with the results
+	 * of the cash flow optimization process. It first lists the information of
+	 * the investments and then it provides the information of the balance
+	 * of the savings account. x and y are the values of the investment and the
+	 * balance arcs, numbered as in indexArcs. The rows are written by PlanWriter,
+	 * which also writes them by column to a binary file when binaryPlan is set.
+	 */
+	public PlanWriter writeCashFlowCSV(double[] x, double[] y, double objective) throws IOException {
+		PlanWriter plan = new PlanWriter(this, x, y, objective);
+		writePlan(plan);
+		return plan;
+	}
 
-			
-			
-			if (smartSaver.solve()) {
-				System.out.println("attempting to create csv file with optimized cash flow");
-				/*
-				 * cfo stands for cash flow optimization. This code creates a csv with the results
-				 * of the cash flow optimization process. It first lists the information of
-				 * the investments and then it provides the information of the balance
-				 * of the savings account.
-				 */
-				try (BufferedWriter writer = new BufferedWriter(new FileWriter("cfo_between_" + start + "_and_" + end + ".csv"))) {
-				    // Write CSV header
-				    writer.write("start_date, days_between, end_date, value, interests, type");
-				    writer.newLine(); // Move to the next line
-				    
-				    DecimalFormat df = new DecimalFormat("#.##"); // Format for the values
-				    
-				    // Process 'arcs' and 'xVars'
-				    List<Node> sortedDayFromNodes = arcs.keySet().stream()
-				                                         .sorted((n1, n2) -> n1.getDate().compareTo(n2.getDate()))
-				                                         .collect(Collectors.toList());
-				    
-				    for (Node dayFrom : sortedDayFromNodes) {
-				        List<Node> sortedDayToNodes = arcs.get(dayFrom).stream()
-				                                           .sorted((n1, n2) -> n1.getDate().compareTo(n2.getDate()))
-				                                           .collect(Collectors.toList());
-				        
-				        for (Node dayTo : sortedDayToNodes) {
-				            double value = smartSaver.getValue(xVars.get("x_" + dayFrom.getIndex() + "_" + dayTo.getIndex()));
-				            if (value > 1) {
-				                String startDate = dayFrom.getDate().toString();
-				                String endDate = dayTo.getDate().toString();
-				                int daysBetween = FinDateCalc.getFinDaysBetween(dayFrom.getDate(), dayTo.getDate());
-				                double coeffValue = (arcsCoeff.get(dayFrom).get(dayTo) - 1) * value;
-				                
-				                // Write the line to the CSV file
-				                writer.write(startDate + "," + daysBetween + "," + endDate + "," + df.format(value) + "," + df.format(coeffValue) + "," + "investment");
-				                writer.newLine();
-				            }
-				        }
-				    }
-				    
-				    // Process 'intArcs' and 'yVars'
-				    List<Node> sortedIntDayFromNodes = intArcs.keySet().stream()
-				                                              .sorted((n1, n2) -> n1.getDate().compareTo(n2.getDate()))
-				                                              .collect(Collectors.toList());
-				    
-				    for (Node dayFrom : sortedIntDayFromNodes) {
-				        List<Node> sortedIntDayToNodes = intArcs.get(dayFrom).stream()
-				                                                .sorted((n1, n2) -> n1.getDate().compareTo(n2.getDate()))
-				                                                .collect(Collectors.toList());
-				        
-				        for (Node dayTo : sortedIntDayToNodes) {
-				            double yValue = smartSaver.getValue(yVars.get("y_" + dayFrom.getIndex() + "_" + dayTo.getIndex()));
-				            if (yValue > 1) {
-				                String startDate = dayFrom.getDate().toString();
-				                String endDate = dayTo.getDate().toString();
-				                int daysBetween = FinDateCalc.getFinDaysBetween(dayFrom.getDate(), dayTo.getDate());
-				                double coeffValue = getArcCoeff(dayFrom.getDate(), dayTo.getDate(), rates) * yValue;
-				                
-				                // Write the line for intArcs to the CSV file
-				                writer.write(startDate + "," + daysBetween + "," + endDate + "," + df.format(yValue) + "," + df.format(coeffValue) + "," + "balance");
-				                writer.newLine();
-				            }
-				        }
-				    }
-				    
-				    System.out.println("CSV file 'cfo_between_" + start + "_and_" + end + ".csv\"' created successfully.");
-				    
-					System.out.println("Objective function = " + df.format(smartSaver.getValue(objectiveFunction)));
-				}
-		} catch (IloException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+	void writePlan(PlanWriter plan) throws IOException {
+		RunMetrics.Phase phase = metrics.start("export");
+		String fileName = getOutputName("cfo") + ".csv";
+		plan.writeCsv(fileName);
+		System.out.println("CSV file '" + fileName + "\"' created successfully.");
+		if (binaryPlan) {
+			plan.writeBinary(getOutputName("cfo") + ".cfop");
+			System.out.println("Binary file '" + getOutputName("cfo") + ".cfop' created successfully.");
 		}
+		phase.end();
+
+		DecimalFormat df = new DecimalFormat("#.##"); // Format for the values
+		System.out.println("Objective function = " + df.format(plan.objective));
 	}
-	
-	private void logResultsToCSV(int branch, int nodeSel, int cut, int heuristicFreq, int threads, double mipgap, int emphasis, boolean presolve, double duration) {
-	    String csvFile = "experiment_results.csv";
-	    File file = new File(csvFile);
-	    boolean isFileNew = !file.exists();  // Check if file exists
 
-	    try (FileWriter fileWriter = new FileWriter(csvFile, true); // Append mode
-	         PrintWriter printWriter = new PrintWriter(fileWriter)) {
+	/*
+	 * Writes the plan solutionCache holds for this problem, if any, and returns
+	 * its objective, or NaN when the problem has to be solved.
+	 */
+	private double replayCachedPlan(boolean minInvestment) throws IOException {
+		if (solutionCache == null)
+			return Double.NaN;
+		double objective = solutionCache.replay(this, minInvestment);
+		if (!Double.isNaN(objective)) {
+			metrics.setStatus("Optimal");
+			metrics.set("objective", objective);
+			metrics.write(getOutputName("cfo"));
+		}
+		return objective;
+	}
 
-	        // If the file is new or empty, write the header first
-	        if (isFileNew || file.length() == 0) {
-	            printWriter.println("Branch,NodeSel,Cut,HeuristicFreq,Threads,MipGap,Emphasis,Presolve,Duration");
-	        }
+	/*
+	 * Name of the files written for this run, such as cfo_between_<start>_and_<end>,
+	 * with the name of the scenario after the prefix when it has one.
+	 */
+	public String getOutputName(String prefix) {
+		String name = scenario.getName() == null ? prefix : prefix + "_" + scenario.getName();
+		if (outputTag != null)
+			name += "_" + outputTag;
+		return name + "_between_" + start + "_and_" + end;
+	}
+
+	// Tells apart the files of runs over the same horizon and household, such as the rate dates of Backtest
+	String outputTag;
 
-	        // Write the data
-	        printWriter.printf("%d,%d,%d,%d,%d,%.6f,%d,%b,%.6f\n",
-	                branch, nodeSel, cut, heuristicFreq, threads, mipgap, emphasis, presolve, duration);
+	/*
+	 * Solves the cash flow optimization problem with the Java engine (see
+	 * JavaFlowSolver) instead of CPLEX and writes the same csv. When minInvestment
+	 * is false the 500000 minimum for investments is relaxed.
+	 */
+	public JavaFlowSolver.Result optimizeCashFlowJava(boolean minInvestment) throws IOException {
+		JavaFlowSolver.Result cached = cachedResult(minInvestment);
+		if (cached != null)
+			return cached;
+		indexArcs();
+		RunMetrics.Phase phase = metrics.start("model_assembly");
+		JavaFlowSolver solver = new JavaFlowSolver(this, minInvestment);
+		phase.end();
+		if (deadline > 0)
+			solver.timeLimit = deadline;
+		double[] start = solutionCache == null || !minInvestment ? null : solutionCache.start(this, minInvestment);
+		if (start == null && heuristicStart && minInvestment)
+			start = heuristicStart(minInvestment);
+		if (start != null) {
+			solver.startPlan = new boolean[start.length];
+			for (int a = 0; a < start.length; a++)
+				solver.startPlan[a] = start[a] > 0;
+		}
+		metrics.set("variables", invFrom.length + balFrom.length);
+		metrics.set("constraints", nodes.size() - 1);
+		phase = metrics.start("solve");
+		JavaFlowSolver.Result result = solver.solve();
+		phase.end();
+		System.out.println("Java engine status is: " + result.status + " after " + result.nodes + " nodes and "
+				+ result.iterations + " simplex iterations, gap " + result.getGap());
+		metrics.setStatus(result.status);
+		metrics.set("objective", result.objective);
+		metrics.set("mip_gap", result.getGap());
+		metrics.set("mip_nodes", result.nodes);
+		metrics.set("simplex_iterations", result.iterations);
+		metrics.set("first_incumbent_seconds", result.firstIncumbent);
+		if (result.x != null) {
+			PlanWriter plan = writeCashFlowCSV(result.x, result.y, result.objective);
+			if (solutionCache != null && result.status.equals("Optimal"))
+				solutionCache.store(this, minInvestment, plan);
+		}
+		metrics.write(getOutputName("cfo"));
+		return result;
+	}
 
-	    } catch (IOException e) {
-	        e.printStackTrace();
-	    }
+	// Result of the plan solutionCache holds for this problem, once written, or null
+	private JavaFlowSolver.Result cachedResult(boolean minInvestment) throws IOException {
+		double cached = replayCachedPlan(minInvestment);
+		if (Double.isNaN(cached))
+			return null;
+		JavaFlowSolver.Result result = new JavaFlowSolver.Result();
+		result.status = "Optimal";
+		result.objective = cached;
+		result.bestBound = cached;
+		return result;
 	}
 
-	
-	private void logResults(int branch, int nodeSel, int cut, int heuristicFreq, int threads, double mipgap, int emphasis, boolean presolve, double duration) {
-        System.out.printf("Branch: %d, NodeSel: %d, Cut: %d, HeuristicFreq: %d, Threads: %d, MipGap: %.6f, Emphasis: %d, Presolve: %b, Duration: %f\n",
-                branch, nodeSel, cut, heuristicFreq, threads, mipgap, emphasis, presolve, duration);
-    }
+	/*
+	 * Investments of the plan of HeuristicPlanner, for the solvers to start
+	 * from, or null when it found none.
+	 */
+	private double[] heuristicStart(boolean minInvestment) {
+		RunMetrics.Phase phase = metrics.start("heuristic");
+		HeuristicPlanner planner = new HeuristicPlanner(this, minInvestment);
+		JavaFlowSolver.Result plan = planner.plan();
+		phase.end();
+		if (plan == null)
+			return null;
+		metrics.set("heuristic_objective", plan.objective);
+		System.out.println("Starting from a heuristic plan with " + planner.investments + " investments and objective "
+				+ plan.objective + ", found in " + plan.seconds + " seconds");
+		return plan.x;
+	}
+
+	/*
+	 * Writes the plan of HeuristicPlanner instead of solving the model, for the
+	 * users who cannot wait for the solvers, with its gap to the linear
+	 * relaxation, which the Java engine solves (see JavaFlowSolver) whichever
+	 * engine is used otherwise. A plan in solutionCache is written instead when
+	 * there is one. The status is Heuristic, or Infeasible when the heuristic
+	 * finds no plan.
+	 */
+	public JavaFlowSolver.Result planFast(boolean minInvestment) throws IOException {
+		JavaFlowSolver.Result cached = cachedResult(minInvestment);
+		if (cached != null)
+			return cached;
+		RunMetrics.Phase phase = metrics.start("heuristic");
+		HeuristicPlanner planner = new HeuristicPlanner(this, minInvestment);
+		JavaFlowSolver.Result result = planner.plan();
+		phase.end();
+		if (result == null) {
+			result = new JavaFlowSolver.Result();
+			result.status = "Infeasible";
+			metrics.setStatus(result.status);
+			metrics.write(getOutputName("cfo"));
+			return result;
+		}
+		result.status = "Heuristic";
+		// The plan is written before its bound is worked out, which takes longer
+		writeCashFlowCSV(result.x, result.y, result.objective);
+
+		phase = metrics.start("solve");
+		JavaFlowSolver.Result relaxation = new JavaFlowSolver(this, false).solve();
+		phase.end();
+		if (relaxation.status.equals("Optimal"))
+			result.bestBound = relaxation.objective;
+		System.out.println("Heuristic plan with " + planner.investments + " investments found in " + result.seconds
+				+ " seconds, gap " + result.getGap() + " to the linear relaxation " + result.bestBound);
+		metrics.setStatus(result.status);
+		metrics.set("objective", result.objective);
+		metrics.set("mip_gap", result.getGap());
+		metrics.set("relaxation_bound", result.bestBound);
+		metrics.set("first_incumbent_seconds", result.firstIncumbent);
+		metrics.set("variables", invFrom.length + balFrom.length);
+		metrics.set("constraints", nodes.size() - 1);
+		metrics.write(getOutputName("cfo"));
+		return result;
+	}
 
-	// Nested Map to store the data: outer map key is the lower bound of duration
-	private static Map<Integer, Map<LocalDate, Double>> interestRates;
+	// Interest rates by duration band and date (see RateTermStructure)
+	private static RateTermStructure interestRates;
+	// Time and bytes it took readData to read them, for the metrics of the runs using them
+	private static double rateLoadSeconds;
+	private static long rateLoadBytes;
 
 	public static void InterestRateLookup() {
-		interestRates = new HashMap<>();
+		interestRates = null;
 	}
 
-	// Method to get the interest rate based on a date they were registered and
-	// duration
-	public static Double getInterestRate(LocalDate date, int duration) {
-		Map<LocalDate, Double> ratesForDuration = interestRates.get(duration);
-		if (ratesForDuration != null) {
-			return ratesForDuration.get(date);
-		}
-		return null; // or throw an exception or return a default value
+	public static RateTermStructure getInterestRates() {
+		return interestRates;
+	}
+
+	/*
+	 * Method to get the interest rate in force on a date for a given duration. It
+	 * throws an IllegalArgumentException when no rates have been read for that
+	 * date or duration.
+	 */
+	public static double getInterestRate(LocalDate date, int duration) {
+		if (interestRates == null)
+			throw new IllegalStateException("No interest rates have been read");
+		return interestRates.getRate(date, duration);
 	}
 
 	/*
@@ -731,8 +1030,11 @@ public class CFO
 	 * the beginning and the ending of the period of a given investment.
 	 */
 	public static double getArcCoeff(LocalDate start, LocalDate end, LocalDate date) {
+		return getDurationCoeff(date, FinDateCalc.getFinDaysBetween(start, end));
+	}
+
+	public static double getDurationCoeff(LocalDate date, int duration) {
 		double coef = 0;
-		int duration = FinDateCalc.getFinDaysBetween(start, end);
 		if (duration > 29)
 			coef = Math.pow(1 + getInterestRate(date, duration), ((double) duration / 360));
 		else
@@ -740,23 +1042,49 @@ public class CFO
 		return coef;
 	}
 
+	/*
+	 * The coefficient of each duration is computed once and shared by all the
+	 * arcs with that duration (see ArcCoefficients).
+	 */
 	public void setArcsCoeff() {
-		for (Node from : arcs.keySet()) {
-			arcsCoeff.put(from, new HashMap<Node, Double>());
-			for (Node to : arcs.get(from)) {
-				LocalDate s = from.getDate();
-				LocalDate e = to.getDate();
-				arcsCoeff.get(from).put(to, getArcCoeff(s, e, rates));
+		RunMetrics.Phase phase = metrics.start("coefficient_build");
+		arcsCoeff = new ArcCoefficients(rates, nodes.size());
+		LocalDate[] dates = nodes.dates();
+		int[] head = arcs.head;
+		for (int from = 0; from < arcs.nodes(); from++)
+			for (int a = arcs.first[from]; a < arcs.first[from + 1]; a++) {
+				int duration = FinDateCalc.getFinDaysBetween(dates[from], dates[head[a]]);
+				arcsCoeff.put(from, head[a], arcsCoeff.forDuration(duration));
 			}
-		}
+		phase.end();
+	}
+
+	/*
+	 * Drops the investment arcs that an optimal plan never needs (see
+	 * NetworkPresolve) and reports how many were removed.
+	 */
+	public void presolve() {
+		long startT = System.nanoTime();
+		RunMetrics.Phase phase = metrics.start("presolve");
+		NetworkPresolve presolve = new NetworkPresolve(this);
+		boolean applied = presolve.run();
+		phase.end();
+		if (applied)
+			System.out.println("Presolve removed " + (presolve.byMaturity + presolve.byStart) + " investment arcs ("
+					+ presolve.byMaturity + " by earlier maturity, " + presolve.byStart + " by earlier start), "
+					+ presolve.remaining + " left, in " + (System.nanoTime() - startT) / 1_000_000_000.0 + " seconds");
+		else
+			System.out.println("Presolve not applied: " + presolve.skipped);
 	}
 
 	public void printNetworkArcs() {
 		System.out.println("This is the list of arcs created for the network");
-		for (Node from : arcs.keySet()) {
-			System.out.print("from " + from.getIndex() + "\t");
-			for (Node to : arcs.get(from))
-				System.out.print("\t" + to.getIndex());
+		for (int from = 0; from < arcs.nodes(); from++) {
+			if (arcs.first[from] == arcs.first[from + 1])
+				continue;
+			System.out.print("from " + from + "\t");
+			for (int a = arcs.first[from]; a < arcs.first[from + 1]; a++)
+				System.out.print("\t" + arcs.head[a]);
 			System.out.println();
 		}
 		System.out.println("End of list of network arcs in the network");
@@ -764,17 +1092,19 @@ public class CFO
 
 	public void printArcsCoefficients() {
 		System.out.println("This are the arcs for which coefficients have been created for the network");
-		for (Node from : arcsCoeff.keySet()) {
-			System.out.print("from " + from.getIndex());
-			for (Node to : arcsCoeff.get(from).keySet())
-				System.out.print(" to " + to.getIndex() + " ");
+		for (int from = 0; from < arcs.nodes(); from++) {
+			if (arcs.first[from] == arcs.first[from + 1])
+				continue;
+			System.out.print("from " + from);
+			for (int a = arcs.first[from]; a < arcs.first[from + 1]; a++)
+				System.out.print(" to " + arcs.head[a] + " ");
 			System.out.println();
-			System.out.print(from.getDate() + "\t" + " to ");
-			for (Node to : arcsCoeff.get(from).keySet())
-				System.out.print(to.getDate() + "\t");
+			System.out.print(nodes.date(from) + "\t" + " to ");
+			for (int a = arcs.first[from]; a < arcs.first[from + 1]; a++)
+				System.out.print(nodes.date(arcs.head[a]) + "\t");
 			System.out.println();
-			for (Node to : arcsCoeff.get(from).keySet())
-				System.out.print(arcsCoeff.get(from).get(to) + "\t");
+			for (int a = arcs.first[from]; a < arcs.first[from + 1]; a++)
+				System.out.print(arcsCoeff.get(from, arcs.head[a]) + "\t");
 			System.out.println();
 		}
 		System.out.println("End of list of network arcs in arcsCoeff");
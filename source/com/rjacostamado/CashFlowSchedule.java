@@ -0,0 +1,72 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * The recurring incomes and bills of a household (see RecurringFlow), any
+ * number of them. compile turns them into the net flow of each day of the
+ * horizon, adding up the flows falling on the same day.
+ */
+public class CashFlowSchedule
+{
+	final List<RecurringFlow> flows;
+
+	public CashFlowSchedule(List<RecurringFlow> f)
+	{
+		flows = Collections.unmodifiableList(new ArrayList<>(f));
+	}
+
+	/*
+	 * Net flow of each day from start (inclusive) to end (exclusive), indexed by
+	 * the number of days since start.
+	 */
+	public double[] compile(LocalDate start, LocalDate end) {
+		double[] netFlow = new double[(int) (end.toEpochDay() - start.toEpochDay())];
+		for (RecurringFlow flow : flows)
+			flow.addTo(netFlow, start, end);
+		return netFlow;
+	}
+
+	public List<RecurringFlow> getFlows() {
+		return flows;
+	}
+
+	/*
+	 * Reads a schedule from a csv with the columns name, amount, day, months,
+	 * escalationMonth and escalationRate, one flow per row. months is either
+	 * "all" or the months separated by semicolons, such as 6;12; escalationMonth
+	 * may be 0 for an amount that does not grow.
+	 */
+	public static CashFlowSchedule read(String path) throws IOException {
+		List<RecurringFlow> flows = new ArrayList<>();
+		try (BufferedReader csvReader = new BufferedReader(new FileReader(new File(path)))) {
+			String row = csvReader.readLine();
+			while ((row = csvReader.readLine()) != null) {
+				if (row.trim().isEmpty())
+					continue;
+				String[] csvData = row.split(",");
+				if (csvData.length < 6)
+					throw new IllegalArgumentException("Expected 6 columns in flow " + row);
+				int months;
+				if (csvData[3].trim().equalsIgnoreCase("all"))
+					months = RecurringFlow.ALL_MONTHS;
+				else {
+					String[] values = csvData[3].trim().split(";");
+					int[] list = new int[values.length];
+					for (int i = 0; i < values.length; i++)
+						list[i] = Integer.parseInt(values[i].trim());
+					months = RecurringFlow.months(list);
+				}
+				flows.add(new RecurringFlow(csvData[0].trim(), Double.parseDouble(csvData[1].trim()),
+						Integer.parseInt(csvData[2].trim()), months, Integer.parseInt(csvData[4].trim()),
+						Double.parseDouble(csvData[5].trim())));
+			}
+		}
+		return new CashFlowSchedule(flows);
+	}
+}
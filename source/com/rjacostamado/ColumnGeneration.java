@@ -0,0 +1,311 @@
+import java.io.IOException;
+import java.util.Arrays;
+
+import ilog.concert.IloColumn;
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloObjective;
+import ilog.concert.IloRange;
+import ilog.cplex.IloCplex;
+
+/*
+ * Solves the cash flow optimization problem without loading every investment
+ * arc into the solver, since only a handful of them carry money in a plan. The
+ * linear relaxation is first solved over all the balance arcs and a seed of
+ * investment arcs, the one maturing last from each day. Then every investment
+ * arc is priced with the dual values of the flow constraints (consFlow), and
+ * the arcs with a positive reduced cost are added, at most the best one from
+ * each day per round. When none is left, the relaxation over the arcs added
+ * is optimal for the whole network, and only then are the minimum investment
+ * constraints imposed, on the arcs added (price and branch), always as
+ * either or constraints with the bounds of InvestmentBounds. The plan found
+ * is optimal among those arcs; since no arcs are priced while branching, it
+ * may fall short of the optimum of the whole network, by at most its gap to
+ * the bound of the relaxation, which is reported.
+ *
+ * An investment of one unit on day i collecting c units on day k takes one
+ * unit out of the flow constraint of i and puts c into that of k, or into the
+ * objective when k is the last day, so its reduced cost is c dual(k) -
+ * dual(i), with dual(last) taken as one.
+ *
+ * solve uses CPLEX and solveJava the Java engine (see JavaFlowSolver).
+ */
+public class ColumnGeneration
+{
+	static final double TOLERANCE = 1e-7;
+
+	final CFO cfo;
+	int maxRounds = 10000;
+
+	// Investment arcs of the network and the ones added so far, numbered as in CFO.indexArcs
+	private int[] from;
+	private int[] to;
+	private double[] arcBound;
+	private boolean[] selected;
+	private int nSelected;
+	private int last;
+	int rounds;
+	double bound = Double.NaN;
+
+	public ColumnGeneration(CFO c)
+	{
+		cfo = c;
+	}
+
+	private void seed() {
+		cfo.indexArcs();
+		from = cfo.invFrom;
+		to = cfo.invTo;
+		arcBound = cfo.getInvestmentBounds();
+		last = cfo.nodes.size() - 1;
+		selected = new boolean[from.length];
+		nSelected = 0;
+		rounds = 0;
+		// Arcs are numbered by start day and then by end day
+		for (int a = 0; a < from.length; a++)
+			if (a + 1 == from.length || from[a + 1] != from[a]) {
+				selected[a] = true;
+				nSelected++;
+			}
+	}
+
+	double reducedCost(int a, double[] duals) {
+		double coeff = cfo.arcsCoeff.get(from[a], to[a]);
+		return coeff * (to[a] < last ? duals[to[a]] : 1) - duals[from[a]];
+	}
+
+	/*
+	 * Arcs not yet added with a positive reduced cost, the best one from each day.
+	 */
+	int[] price(double[] duals) {
+		int[] entering = new int[last];
+		int count = 0;
+		int a = 0;
+		while (a < from.length) {
+			int day = from[a];
+			int best = -1;
+			double bestCost = TOLERANCE;
+			for (; a < from.length && from[a] == day; a++) {
+				if (selected[a])
+					continue;
+				double d = reducedCost(a, duals);
+				if (d > bestCost) {
+					bestCost = d;
+					best = a;
+				}
+			}
+			if (best >= 0)
+				entering[count++] = best;
+		}
+		return Arrays.copyOf(entering, count);
+	}
+
+	private void add(int[] entering) {
+		for (int a : entering) {
+			selected[a] = true;
+			nSelected++;
+		}
+	}
+
+	private int[] selectedArcs() {
+		int[] arcs = new int[nSelected];
+		int k = 0;
+		for (int a = 0; a < selected.length; a++)
+			if (selected[a])
+				arcs[k++] = a;
+		return arcs;
+	}
+
+	/*
+	 * Solves the problem with CPLEX and writes the plan (see CFO.writeCashFlowCSV).
+	 * Returns the objective, or NaN when no plan was found.
+	 */
+	public double solve() throws IOException {
+		double objective = Double.NaN;
+		seed();
+		int nBal = cfo.balFrom.length;
+		try (IloCplex smartSaver = new IloCplex()) {
+			RunMetrics.Phase phase = cfo.metrics.start("model_assembly");
+			IloObjective objectiveFunction = smartSaver.addMaximize();
+			IloRange[] consFlow = new IloRange[last];
+			for (int idx = 0; idx < last; idx++) {
+				double netFlow = cfo.nodes.netFlow[idx];
+				consFlow[idx] = smartSaver.addRange(netFlow, netFlow, "consFlow[" + idx + "]");
+			}
+			IloNumVar[] yVars = new IloNumVar[nBal];
+			for (int a = 0; a < nBal; a++)
+				yVars[a] = smartSaver.numVar(
+						column(smartSaver, objectiveFunction, consFlow, cfo.balFrom[a], cfo.balTo[a], 1), 0,
+						Double.MAX_VALUE);
+			IloNumVar[] xVars = new IloNumVar[from.length];
+			for (int a : selectedArcs())
+				xVars[a] = investment(smartSaver, objectiveFunction, consFlow, a);
+			phase.end();
+
+			phase = cfo.metrics.start("solve");
+			smartSaver.setOut(null);
+			boolean solved;
+			while ((solved = smartSaver.solve()) && rounds < maxRounds) {
+				rounds++;
+				int[] entering = price(smartSaver.getDuals(consFlow));
+				System.out.println("Round " + rounds + ": relaxation " + smartSaver.getObjValue() + ", "
+						+ entering.length + " investment arcs added to " + nSelected);
+				if (entering.length == 0)
+					break;
+				add(entering);
+				for (int a : entering)
+					xVars[a] = investment(smartSaver, objectiveFunction, consFlow, a);
+			}
+			if (!solved) {
+				phase.end();
+				System.out.println("No solution found for the relaxation, Cplex status is: " + smartSaver.getCplexStatus());
+				cfo.metrics.setStatus(smartSaver.getCplexStatus().toString());
+				cfo.metrics.write(cfo.getOutputName("cfo"));
+				return objective;
+			}
+			bound = smartSaver.getObjValue();
+
+			/*
+			 * Defines the constraints either or for the investments added
+			 */
+			int[] arcs = selectedArcs();
+			IloIntVar[] zVars = smartSaver.boolVarArray(arcs.length);
+			smartSaver.add(zVars);
+			for (int k = 0; k < arcs.length; k++)
+				CFO.addEitherOr(smartSaver, xVars[arcs[k]], zVars[k], arcBound[arcs[k]]);
+			smartSaver.setOut(System.out);
+			cfo.configure(smartSaver);
+			solved = smartSaver.solve();
+			phase.end();
+			System.out.println("Column generation added " + nSelected + " of " + from.length + " investment arcs in "
+					+ rounds + " rounds, relaxation " + bound);
+			System.out.println("Cplex status is: " + smartSaver.getCplexStatus());
+			setMetrics(nBal + 2 * nSelected, last + 2 * nSelected);
+			cfo.metrics.setStatus(smartSaver.getCplexStatus().toString());
+			cfo.metrics.set("mip_nodes", smartSaver.getNnodes64());
+
+			if (solved) {
+				objective = smartSaver.getObjValue();
+				cfo.metrics.set("objective", objective);
+				cfo.metrics.set("mip_gap", smartSaver.getMIPRelativeGap());
+				System.out.println("Gap to the relaxation of the whole network " + (bound - objective) / Math.abs(objective));
+				double[] x = new double[from.length];
+				IloNumVar[] chosen = new IloNumVar[arcs.length];
+				for (int k = 0; k < arcs.length; k++)
+					chosen[k] = xVars[arcs[k]];
+				double[] values = smartSaver.getValues(chosen);
+				for (int k = 0; k < arcs.length; k++)
+					x[arcs[k]] = values[k];
+				cfo.writeCashFlowCSV(x, smartSaver.getValues(yVars), objective);
+			} else
+				System.out.println("No solution found.");
+			cfo.metrics.write(cfo.getOutputName("cfo"));
+			smartSaver.end();
+		} catch (IloException e) {
+			e.printStackTrace();
+		}
+		return objective;
+	}
+
+	private IloNumVar investment(IloCplex smartSaver, IloObjective objectiveFunction, IloRange[] consFlow, int a)
+			throws IloException {
+		return smartSaver.numVar(column(smartSaver, objectiveFunction, consFlow, from[a], to[a],
+				cfo.arcsCoeff.get(from[a], to[a])), 0, arcBound[a]);
+	}
+
+	// Column of an arc taking one unit out of day f and putting coeff into day t
+	private IloColumn column(IloCplex smartSaver, IloObjective objectiveFunction, IloRange[] consFlow, int f, int t,
+			double coeff) throws IloException {
+		IloColumn column = smartSaver.column(consFlow[f], 1);
+		if (t < last)
+			return column.and(smartSaver.column(consFlow[t], -coeff));
+		return column.and(smartSaver.column(objectiveFunction, coeff));
+	}
+
+	/*
+	 * Solves the problem with the Java engine and writes the plan. The relaxation
+	 * of each round is solved from scratch over the arcs added so far, which are
+	 * handed to JavaFlowSolver by narrowing the arcs of cfo for the time of the
+	 * call. The values of the result are numbered as in CFO.indexArcs.
+	 */
+	public JavaFlowSolver.Result solveJava(boolean minInvestment) throws IOException {
+		seed();
+		RunMetrics.Phase phase = cfo.metrics.start("solve");
+		JavaFlowSolver.Result result;
+		int[] arcs;
+		try {
+			while (true) {
+				arcs = restrict();
+				JavaFlowSolver.Result relaxation = new JavaFlowSolver(cfo, false).solve();
+				// Without an optimal relaxation there is no plan, only its status to report
+				if (relaxation.duals == null) {
+					result = relaxation;
+					result.x = null;
+					break;
+				}
+				bound = relaxation.objective;
+				int[] entering = new int[0];
+				if (rounds < maxRounds) {
+					rounds++;
+					entering = price(relaxation.duals);
+					System.out.println("Round " + rounds + ": relaxation " + relaxation.objective + ", "
+							+ entering.length + " investment arcs added to " + nSelected);
+				}
+				// Once no arc is added, or the rounds run out, the minimum is imposed on the arcs added
+				if (entering.length == 0) {
+					result = minInvestment ? new JavaFlowSolver(cfo, true).solve() : relaxation;
+					break;
+				}
+				add(entering);
+			}
+		} finally {
+			cfo.invFrom = from;
+			cfo.invTo = to;
+			cfo.invBound = arcBound;
+		}
+		phase.end();
+
+		if (result.x != null) {
+			double[] x = new double[from.length];
+			for (int k = 0; k < arcs.length; k++)
+				x[arcs[k]] = result.x[k];
+			result.x = x;
+		}
+		System.out.println("Column generation added " + nSelected + " of " + from.length + " investment arcs in "
+				+ rounds + " rounds, relaxation " + bound);
+		System.out.println("Java engine status is: " + result.status + " after " + result.nodes + " nodes and "
+				+ result.iterations + " simplex iterations, gap " + result.getGap());
+		setMetrics(cfo.balFrom.length + nSelected, last);
+		cfo.metrics.setStatus(result.status);
+		cfo.metrics.set("objective", result.objective);
+		cfo.metrics.set("mip_gap", result.getGap());
+		cfo.metrics.set("mip_nodes", result.nodes);
+		if (result.x != null)
+			cfo.writeCashFlowCSV(result.x, result.y, result.objective);
+		cfo.metrics.write(cfo.getOutputName("cfo"));
+		return result;
+	}
+
+	// Narrows the investment arcs of cfo to the ones added, returning their numbers
+	private int[] restrict() {
+		int[] arcs = selectedArcs();
+		cfo.invFrom = new int[arcs.length];
+		cfo.invTo = new int[arcs.length];
+		cfo.invBound = new double[arcs.length];
+		for (int k = 0; k < arcs.length; k++) {
+			cfo.invFrom[k] = from[arcs[k]];
+			cfo.invTo[k] = to[arcs[k]];
+			cfo.invBound[k] = arcBound[arcs[k]];
+		}
+		return arcs;
+	}
+
+	private void setMetrics(int variables, int constraints) {
+		cfo.metrics.set("variables", variables);
+		cfo.metrics.set("constraints", constraints);
+		cfo.metrics.set("generated_investment_arcs", nSelected);
+		cfo.metrics.set("pricing_rounds", rounds);
+		cfo.metrics.set("relaxation_bound", bound);
+	}
+}
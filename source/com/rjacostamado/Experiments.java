@@ -15,8 +15,189 @@ public class Experiments {
 		LocalDate startDate = LocalDate.of(2024, 11, 6);
 		LocalDate endDate = LocalDate.of(2025, 12, 31);
 		LocalDate dateRates = LocalDate.of(2024, 11, 1);
-		
-		for(int i = 0; i < 1; i++)
+
+		/*
+		 * --engine=java solves the model with the Java engine instead of CPLEX (see
+		 * JavaFlowSolver) and --no-min-investment lifts the 500000 minimum for the
+		 * investments in that engine.
+		 */
+		boolean javaEngine = false;
+		boolean minInvestment = true;
+		/*
+		 * --sweep solves the model for every combination of solver parameters (see
+		 * ParameterSweep) with --workers models at a time and at most --threads
+		 * threads in total.
+		 */
+		boolean sweep = false;
+		/*
+		 * --tune looks for good solver parameters by successive halving (see
+		 * SolverTuner) and saves them for the production solves.
+		 */
+		boolean tune = false;
+		/*
+		 * --horizons=N runs the experiment for N horizons, each one a year longer
+		 * than the previous one. With --nested the network is built once for the
+		 * longest of them and the shorter ones are views over it (see CFO.horizon).
+		 */
+		int horizons = 1;
+		boolean nested = false;
+		// --no-presolve keeps the investment arcs that NetworkPresolve would drop
+		boolean presolve = true;
+		/*
+		 * --column-generation loads the investment arcs into the solver as they are
+		 * needed (see ColumnGeneration), with either engine.
+		 */
+		boolean columnGeneration = false;
+		// --balance-chain keeps money in balance with one arc per day (see CFO.balanceChain)
+		boolean balanceChain = false;
+		// --semi-continuous models the investments as semi-continuous variables (see CFO.investmentVar)
+		boolean semiContinuous = false;
+		// --binary-plan also writes the plan by column to a .cfop file (see PlanWriter)
+		boolean binaryPlan = false;
+		/*
+		 * --model-cache[=folder] keeps the networks and models built in folder
+		 * (model_cache by default) and loads them in later runs with the same inputs
+		 * (see ModelCache), holding at most --model-cache-mb megabytes of entries
+		 * used within the last --model-cache-days days.
+		 */
+		ModelCache modelCache = null;
+		long cacheMegabytes = -1;
+		double cacheDays = -1;
+		/*
+		 * --solution-cache[=folder] keeps the optimal plans found in folder
+		 * (solution_cache by default), at most --solution-cache-plans of them, and
+		 * writes them again for repeated problems (see SolutionCache).
+		 */
+		String solutionFolder = null;
+		int solutionPlans = 256;
+		/*
+		 * --backtest solves the model under each rate sheet of the rates file,
+		 * --parallel of them at a time, building the network once (see Backtest).
+		 */
+		boolean backtest = false;
+		/*
+		 * --scenarios=file.csv solves the model for every household in the file (see
+		 * Scenario.readAll), --parallel of them at a time (see ScenarioRunner).
+		 */
+		String scenarioFile = null;
+		/*
+		 * --fast writes the plan of HeuristicPlanner, with its gap to the linear
+		 * relaxation, instead of solving the model (see CFO.planFast). Otherwise the
+		 * solvers start from that plan, unless --no-heuristic-start is given, and
+		 * stop after --deadline=seconds with the best plan found by then.
+		 */
+		boolean fast = false;
+		boolean heuristicStart = true;
+		double deadline = 0;
+		/*
+		 * --windows[=days] solves the model by time windows of that many days (365
+		 * by default), overlapping by --window-overlap days, --parallel of them at a
+		 * time (see WindowDecomposition). With --compare the whole model is solved
+		 * as well and both objectives are printed.
+		 */
+		int windowDays = 0;
+		int windowOverlap = 30;
+		boolean compare = false;
+		// --flows=file.csv gives the incomes and bills of the household (see CashFlowSchedule.read)
+		Scenario household = Scenario.DEFAULT;
+		int parallel = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+		int threads = Runtime.getRuntime().availableProcessors();
+		int workers = Math.max(1, threads / 4);
+		for (String arg : args) {
+			if (arg.equals("--engine=java"))
+				javaEngine = true;
+			else if (arg.equals("--no-min-investment"))
+				minInvestment = false;
+			else if (arg.equals("--sweep"))
+				sweep = true;
+			else if (arg.equals("--tune"))
+				tune = true;
+			else if (arg.startsWith("--horizons="))
+				horizons = Integer.parseInt(arg.substring("--horizons=".length()));
+			else if (arg.equals("--nested"))
+				nested = true;
+			else if (arg.equals("--no-presolve"))
+				presolve = false;
+			else if (arg.equals("--binary-plan"))
+				binaryPlan = true;
+			else if (arg.equals("--column-generation"))
+				columnGeneration = true;
+			else if (arg.equals("--semi-continuous"))
+				semiContinuous = true;
+			else if (arg.equals("--balance-chain"))
+				balanceChain = true;
+			else if (arg.equals("--backtest"))
+				backtest = true;
+			else if (arg.equals("--model-cache"))
+				modelCache = new ModelCache("model_cache");
+			else if (arg.startsWith("--model-cache="))
+				modelCache = new ModelCache(arg.substring("--model-cache=".length()));
+			else if (arg.equals("--solution-cache"))
+				solutionFolder = "solution_cache";
+			else if (arg.startsWith("--solution-cache="))
+				solutionFolder = arg.substring("--solution-cache=".length());
+			else if (arg.startsWith("--solution-cache-plans="))
+				solutionPlans = Integer.parseInt(arg.substring("--solution-cache-plans=".length()));
+			else if (arg.startsWith("--model-cache-mb="))
+				cacheMegabytes = Long.parseLong(arg.substring("--model-cache-mb=".length()));
+			else if (arg.startsWith("--model-cache-days="))
+				cacheDays = Double.parseDouble(arg.substring("--model-cache-days=".length()));
+			else if (arg.equals("--fast"))
+				fast = true;
+			else if (arg.equals("--no-heuristic-start"))
+				heuristicStart = false;
+			else if (arg.startsWith("--deadline="))
+				deadline = Double.parseDouble(arg.substring("--deadline=".length()));
+			else if (arg.equals("--windows"))
+				windowDays = 365;
+			else if (arg.startsWith("--windows="))
+				windowDays = Integer.parseInt(arg.substring("--windows=".length()));
+			else if (arg.startsWith("--window-overlap="))
+				windowOverlap = Integer.parseInt(arg.substring("--window-overlap=".length()));
+			else if (arg.equals("--compare"))
+				compare = true;
+			else if (arg.startsWith("--scenarios="))
+				scenarioFile = arg.substring("--scenarios=".length());
+			else if (arg.startsWith("--flows="))
+				household = Scenario.DEFAULT.withSchedule(CashFlowSchedule.read(arg.substring("--flows=".length())));
+			else if (arg.startsWith("--parallel="))
+				parallel = Integer.parseInt(arg.substring("--parallel=".length()));
+			else if (arg.startsWith("--workers="))
+				workers = Integer.parseInt(arg.substring("--workers=".length()));
+			else if (arg.startsWith("--threads="))
+				threads = Integer.parseInt(arg.substring("--threads=".length()));
+		}
+		// The arcs the presolve drops depend on the rates
+		if (backtest)
+			presolve = false;
+		if (modelCache != null) {
+			if (cacheMegabytes >= 0)
+				modelCache.maxBytes = cacheMegabytes << 20;
+			if (cacheDays >= 0)
+				modelCache.maxAgeDays = cacheDays;
+		}
+		SolutionCache solutionCache = solutionFolder == null ? null : new SolutionCache(solutionFolder, solutionPlans);
+
+		CFO longest = null;
+		if (nested)
+			for (int i = horizons - 1; i >= 0 && longest == null; i--) {
+				LocalDate hor_end = endDate.withYear(endDate.getYear() + i * 1);
+				if (FinDateCalc.getFinDaysBetween(startDate, hor_end) > 1799)
+					continue;
+				CFO.InterestRateLookup();
+				CFO.readData("data/BankInterestRates.csv");
+				long startTime = System.nanoTime();
+				longest = new CFO(startDate, hor_end, dateRates, household);
+				longest.balanceChain = balanceChain;
+				longest.modelCache = modelCache;
+				longest.CreateNodeDataBases(startDate, hor_end);
+				longest.setSinkAndSourceNodes();
+				longest.buildNetwork(presolve);
+				System.out.println("Network up to " + hor_end + " built in "
+						+ (System.nanoTime() - startTime) / 1_000_000_000.0 + " seconds");
+			}
+
+		for(int i = 0; i < horizons; i++)
 		{
 			LocalDate hor_end = endDate.withYear(endDate.getYear() + i * 1);
 			/*
@@ -45,8 +226,39 @@ public class Experiments {
 				 * the following lines of code identify the interest rates for the
 				 * different lengths of virtual investments.
 				 */
-				CFO.InterestRateLookup();
-				CFO.readData("data/BankInterestRates.csv");
+				boolean view = longest != null && span >= 30;
+				if (!view) {
+					CFO.InterestRateLookup();
+					CFO.readData("data/BankInterestRates.csv");
+				}
+
+				if (scenarioFile != null) {
+					if (span < 30) {
+						System.out.println("Investment impossible! Time lapse between dates less than 30 days!");
+						continue;
+					}
+					ScenarioRunner runner = new ScenarioRunner(startDate, hor_end, dateRates, parallel);
+					runner.javaEngine = javaEngine;
+					runner.minInvestment = minInvestment;
+					runner.presolve = presolve;
+					runner.binaryPlan = binaryPlan;
+					runner.balanceChain = balanceChain;
+					runner.modelCache = modelCache;
+					runner.solutionCache = solutionCache;
+					runner.fast = fast;
+					runner.heuristicStart = heuristicStart;
+					runner.deadline = deadline;
+					try {
+						for (ScenarioRunner.Outcome outcome : runner.run(Scenario.readAll(scenarioFile)))
+							System.out.println("Scenario " + outcome.scenario.getName() + ": " + outcome.status
+									+ ", objective " + outcome.objective + " in " + outcome.seconds + " seconds");
+						if (solutionCache != null)
+							System.out.println("Solution cache: " + solutionCache.stats());
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					continue;
+				}
 
 				// Record the start time
 				long startTimeOrg = System.nanoTime();
@@ -54,12 +266,23 @@ public class Experiments {
 				double duration = 0;
 
 				System.out.println("Running experiment between " + startDate + " and  " + hor_end);
-				CFO cfo = new CFO(startDate, hor_end, dateRates);
-				cfo.CreateNodeDataBases(startDate, hor_end);
-				cfo.setSinkAndSourceNodes();
-				int n = cfo.networkNodes.size() - 1;
-				cfo.createNetworkArcs(n);
-				cfo.setArcsCoeff();
+				CFO cfo;
+				if (view)
+					cfo = longest.horizon(hor_end);
+				else {
+					cfo = new CFO(startDate, hor_end, dateRates, household);
+					cfo.balanceChain = balanceChain;
+					cfo.modelCache = modelCache;
+					cfo.CreateNodeDataBases(startDate, hor_end);
+					cfo.setSinkAndSourceNodes();
+					cfo.buildNetwork(presolve);
+				}
+				cfo.binaryPlan = binaryPlan;
+				cfo.semiContinuous = semiContinuous;
+				cfo.solutionCache = solutionCache;
+				cfo.heuristicStart = heuristicStart;
+				cfo.deadline = deadline;
+				duration = (System.nanoTime() - startTimeOrg) / 1_000_000_000.0;
 
 				/*
 				 * If there are more than 30 financial days between start and end dates, then it
@@ -72,16 +295,65 @@ public class Experiments {
 				if (FinDateCalc.getFinDaysBetween(startDate, hor_end) >= 30)
 				{
 					
-					cfo.optimizeCashFlow();
-					
-					// System.out.println("Execution time for model set up: " + duration + "
-					// nanoseconds");
-					System.out.println("Execution time for model set up:" + duration + " seconds");
+					if (tune)
+						new SolverTuner(cfo).tune();
+					else if (sweep) {
+						try {
+							new ParameterSweep(cfo, workers, threads).run();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					} else if (backtest) {
+						Backtest runner = new Backtest(cfo, parallel);
+						runner.javaEngine = javaEngine;
+						runner.minInvestment = minInvestment;
+						try {
+							for (Backtest.Outcome outcome : runner.run(Backtest.rateDates()))
+								System.out.println("Rates of " + outcome.rates + ": " + outcome.status + ", objective "
+										+ outcome.objective + " in " + outcome.seconds + " seconds");
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					} else if (windowDays > 0) {
+						WindowDecomposition decomposition = new WindowDecomposition(cfo, parallel);
+						decomposition.windowDays = windowDays;
+						decomposition.overlap = windowOverlap;
+						decomposition.javaEngine = javaEngine;
+						decomposition.minInvestment = minInvestment;
+						try {
+							JavaFlowSolver.Result decomposed = decomposition.run();
+							if (compare) {
+								long monolithicStart = System.nanoTime();
+								cfo.metrics.set("decomposed_objective", decomposed.objective);
+								double objective = javaEngine ? cfo.optimizeCashFlowJava(minInvestment).objective
+										: cfo.optimizeCashFlow();
+								System.out.println("Decomposed objective " + decomposed.objective + " in "
+										+ decomposed.seconds + " seconds, monolithic objective " + objective + " in "
+										+ (System.nanoTime() - monolithicStart) / 1_000_000_000.0 + " seconds");
+							}
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					} else if (fast) {
+						JavaFlowSolver.Result plan = cfo.planFast(minInvestment);
+						System.out.println("Fast plan: " + plan.status + ", objective " + plan.objective + ", gap "
+								+ plan.getGap());
+					} else if (columnGeneration && javaEngine)
+						new ColumnGeneration(cfo).solveJava(minInvestment);
+					else if (columnGeneration)
+						new ColumnGeneration(cfo).solve();
+					else if (javaEngine)
+						cfo.optimizeCashFlowJava(minInvestment);
+					else
+						cfo.optimizeCashFlow();
 
 				} else
 					System.out.println("Investment impossible! Time lapse between dates less than 30 days!");
 
 				System.out.println("Execution time for model set up:" + duration + " seconds");
+				System.out.println("Time by phase: " + cfo.metrics.summary());
+				if (solutionCache != null)
+					System.out.println("Solution cache: " + solutionCache.stats());
 
 				endTime = System.nanoTime();
 				
@@ -1,11 +1,32 @@
 import java.time.LocalDate;
-import java.time.Month;
 import java.time.temporal.ChronoUnit;
 public class FinDateCalc {
 
+    /*
+     * The Gregorian calendar repeats itself every 400 years, that is, every 4800
+     * months. The financial-day ordinals used by addFinancialDays are tabulated
+     * per month over one such cycle, so that any date can be mapped to its
+     * ordinal (and back) without walking the calendar day by day.
+     */
+    private static final int CYCLE_MONTHS = 4800;
+
+    // Number of 31-day months in the year before month m (index m - 1)
+    private static final int[] MONTHS_OF_31_BEFORE = {0, 1, 1, 2, 2, 3, 3, 4, 5, 5, 6, 6};
+
+    /*
+     * Ordinal of the first on-path day of each month in the cycle, for start
+     * dates in months of 31 days (the 31st is skipped) and for any other start
+     * date. They are built once when the class is loaded and never change, so
+     * every thread reads them without a lock.
+     */
+    private static final int[] ORDINALS_SKIP_31 = buildMonthOrdinals(true);
+    private static final int[] ORDINALS = buildMonthOrdinals(false);
+
     public static int getFinDaysBetween(LocalDate startDate, LocalDate endDate) {
         // Initialize the total number of days
         int totalDays = (int) ChronoUnit.DAYS.between(startDate, endDate);
+        if (totalDays < 0)
+            return totalDays;
 
         // Adjust for 31st days
         totalDays -= count31stDays(startDate, endDate);
@@ -17,105 +38,147 @@ public class FinDateCalc {
         return totalDays;
     }
 
+    /*
+     * Number of 31st days between startDate and endDate, both included. It is
+     * the difference of the running count of 31st days up to each date.
+     */
     private static long count31stDays(LocalDate startDate, LocalDate endDate) {
-        long count = 0;
-        LocalDate date = startDate;
+        return thirtyFirstsUpTo(endDate) - thirtyFirstsUpTo(startDate.minusDays(1));
+    }
 
-        while (!date.isAfter(endDate)) {
-            if (date.getDayOfMonth() == 31) {
-                count++;
-            }
-            date = date.plusDays(1);
-        }
-        return count;
+    private static long thirtyFirstsUpTo(LocalDate date) {
+        return 7L * date.getYear() + MONTHS_OF_31_BEFORE[date.getMonthValue() - 1]
+                + (date.getDayOfMonth() == 31 ? 1 : 0);
     }
 
+    /*
+     * Adds two days for every February of 28 days and one day for every
+     * February of 29 days in the range. The February of the start date counts
+     * when the range starts in January or February; the February of the end
+     * date counts when the range ends in February or later.
+     */
     private static long countMissingFebruaryDays(LocalDate startDate, LocalDate endDate) {
-        long count = 0;
-        LocalDate date = startDate;
+        long firstYear = startDate.getMonthValue() <= 2 ? startDate.getYear() : startDate.getYear() + 1L;
+        long lastYear = endDate.getMonthValue() >= 2 ? endDate.getYear() : endDate.getYear() - 1L;
+        if (lastYear < firstYear)
+            return 0;
 
-        // Check each February in the range
-        while (!date.isAfter(endDate)) {
-            if (date.getMonthValue() == 2) {
-                if (date.lengthOfMonth() == 28) {
-                    count += 2;
-                } else if (date.lengthOfMonth() == 29) {
-                    count += 1;
-                }
-            }
-            date = date.plusMonths(1).withDayOfMonth(1);
-        }
+        long leapYears = leapYearsUpTo(lastYear) - leapYearsUpTo(firstYear - 1);
+        return 2 * (lastYear - firstYear + 1) - leapYears;
+    }
 
-        return count;
+    private static long leapYearsUpTo(long year) {
+        return Math.floorDiv(year, 4) - Math.floorDiv(year, 100) + Math.floorDiv(year, 400);
     }
-    
+
     private static boolean isAfterFeb(LocalDate date)
     {
-    	if(date.isAfter(LocalDate.of(date.getYear(), Month.FEBRUARY, 1).withDayOfMonth(LocalDate.of(date.getYear(), Month.FEBRUARY, 1).lengthOfMonth())))
-    		return true;
-    	else
-    		return false;
+    	return date.getMonthValue() > 2;
     }
-    
+
+    /*
+     * Moving forward one financial day at a time, a date either advances one
+     * calendar day or, for start dates in months of 31 days, jumps from the 30th
+     * over the 31st (and over the 1st after a month of 30 days). The last day of
+     * February is worth two financial days. Every day reached this way has an
+     * ordinal, so the answer is the first reachable day whose ordinal is at
+     * least the ordinal of the start date plus financialDays.
+     */
     public static LocalDate addFinancialDays(LocalDate startDate, int financialDays) {
+        if (financialDays <= 0)
+            return startDate;
+
+        boolean skip31 = startDate.lengthOfMonth() == 31;
         LocalDate date = startDate;
-        long addedDays = 0;
-        int lengthOfMonth = 0;
-        while (addedDays < financialDays)
-        {
-        	if(date.getMonthValue() != 2)
-        		if(date.getDayOfMonth() < 30)
-        		{
-                	date = date.plusDays(1);
-                	addedDays++;
-        		}
-        		else
-        		{
-        			if(startDate.lengthOfMonth() == 31)
-        			{
-        				// Skip the 31st day
-                    	date = date.plusDays(2);
-                    	addedDays++;
-        			}
-        			else
-        			{
-        				date = date.plusDays(1);
-        				addedDays++;
-        			}
-        		}
-        	else
-        	{
-        		// Adjust for February days
-        		lengthOfMonth = date.lengthOfMonth();
-        		if(date.getDayOfMonth() < lengthOfMonth && addedDays < financialDays)
-        		{
-        			date = date.plusDays(1);
-        			addedDays += 1;
-        		}
-        		else
-        		{
-        			date = date.plusDays(1);
-            		addedDays +=2;
-        		}
-        		
-				/*
-				 * if(lengthOfMonth == 28 && addedDays <= financialDays - 2) { date =
-				 * date.plusDays(1); // February has 28 days, so add the missing days addedDays
-				 * += 2; // Compensate for the two missing days } else { if(lengthOfMonth == 29
-				 * && addedDays <= financialDays - 1) { date = date.plusDays(1); // February has
-				 * 29 days, so add one missing day addedDays += 1; // Compensate for the missing
-				 * day } }
-				 */
-        	}
+        long month = monthIndex(date);
+        if (date.getDayOfMonth() < firstDay(month, skip31) || date.getDayOfMonth() > lastDay(month, skip31)) {
+            // Start dates outside of the path move onto it with one financial day
+            date = date.getDayOfMonth() == 31 ? date.plusDays(2) : date.plusDays(1);
+            if (--financialDays == 0)
+                return date;
+            month = monthIndex(date);
+        }
+
+        long target = ordinal(month, skip31) + date.getDayOfMonth() - firstDay(month, skip31) + financialDays;
+        int[] ordinals = getMonthOrdinals(skip31);
+        long cycles = Math.floorDiv(target, ordinals[CYCLE_MONTHS]);
+        long rest = target - cycles * ordinals[CYCLE_MONTHS];
+
+        // Last month of the cycle whose first on-path day is not past the target
+        int low = 0;
+        int high = CYCLE_MONTHS - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (ordinals[mid] <= rest)
+                low = mid;
+            else
+                high = mid - 1;
+        }
+        month = cycles * CYCLE_MONTHS + low;
+        long offset = rest - ordinals[low];
+        if (offset > lastDay(month, skip31) - firstDay(month, skip31))
+            return monthStart(month + 1).withDayOfMonth(firstDay(month + 1, skip31));
+        return monthStart(month).withDayOfMonth(firstDay(month, skip31) + (int) offset);
+    }
+
+    private static long monthIndex(LocalDate date) {
+        return 12L * date.getYear() + date.getMonthValue() - 1;
+    }
+
+    private static LocalDate monthStart(long month) {
+        return LocalDate.of((int) Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1, 1);
+    }
+
+    private static int monthLength(long month) {
+        int monthOfYear = Math.floorMod(month, 12) + 1;
+        if (monthOfYear == 2) {
+            long year = Math.floorDiv(month, 12);
+            return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
         }
-        return date;
+        return (monthOfYear == 4 || monthOfYear == 6 || monthOfYear == 9 || monthOfYear == 11) ? 30 : 31;
+    }
+
+    // First day of the month reached when moving forward in financial days
+    private static int firstDay(long month, boolean skip31) {
+        int previous = monthLength(month - 1);
+        return (skip31 && previous == 30) ? 2 : 1;
+    }
+
+    // Last day of the month reached when moving forward in financial days
+    private static int lastDay(long month, boolean skip31) {
+        int length = monthLength(month);
+        return (skip31 && length == 31) ? 30 : length;
     }
-    
+
+    private static long ordinal(long month, boolean skip31) {
+        int[] ordinals = getMonthOrdinals(skip31);
+        return Math.floorDiv(month, CYCLE_MONTHS) * ordinals[CYCLE_MONTHS]
+                + ordinals[Math.floorMod(month, CYCLE_MONTHS)];
+    }
+
+    private static int[] getMonthOrdinals(boolean skip31) {
+        return skip31 ? ORDINALS_SKIP_31 : ORDINALS;
+    }
+
+    private static int[] buildMonthOrdinals(boolean skip31) {
+        int[] ordinals = new int[CYCLE_MONTHS + 1];
+        for (int month = 0; month < CYCLE_MONTHS; month++) {
+            // The last day of February is worth two financial days
+            int lastStep = Math.floorMod(month, 12) == 1 ? 2 : 1;
+            ordinals[month + 1] = ordinals[month] + lastDay(month, skip31) - firstDay(month, skip31) + lastStep;
+        }
+        return ordinals;
+    }
+
+    /*
+     * Walks back from date until there are 30 financial days to it. Less than 28
+     * calendar days back there can be at most 29 financial days, so the walk
+     * starts there and ends after a handful of steps.
+     */
     public static LocalDate getLastDayToInvest(LocalDate date)
     {
-    	LocalDate lastDay = date;
+    	LocalDate lastDay = date.minusDays(28);
         while(getFinDaysBetween(lastDay, date) < 30)
-        	// Increment financialDays if not skipping
             lastDay = lastDay.minusDays(1);
         return lastDay;
     }
@@ -0,0 +1,457 @@
+import java.util.Arrays;
+
+/*
+ * Bounded primal simplex for the linear programs of the cash flow network.
+ * There is one row per day of the planning horizon but the last one, which
+ * states that the money leaving the day minus the money arriving to it equals
+ * its net flow. Every column is an arc: it takes one unit out of the row of
+ * the day it starts at (tail) and puts gain units into the row of the day it
+ * ends at (head). Arcs ending on the last day have no head row, what they
+ * deliver is their contribution to the objective, which is maximized.
+ *
+ * Since columns have at most two nonzeros, the basis inverse is kept as a
+ * dense matrix and pricing a column takes two lookups of the dual values.
+ * Infeasible starting bases (e.g. after a branching decision changes the
+ * bounds of an arc) are repaired by a phase one that minimizes the sum of the
+ * bound violations of the basic variables, so a solve can always start from
+ * the optimal basis of a previous one.
+ */
+public class FlowSimplex
+{
+	public static final int OPTIMAL = 0;
+	public static final int INFEASIBLE = 1;
+	public static final int UNBOUNDED = 2;
+	public static final int ITERATION_LIMIT = 3;
+	// The basis became singular again after starting from the artificial columns
+	public static final int NUMERICAL_FAILURE = 4;
+
+	static final double FEAS_TOL = 1e-5;
+	static final double OPT_TOL = 1e-9;
+	static final double PIVOT_TOL = 1e-9;
+
+	// Problem data, artificial columns n + i are the unit vectors of rows i
+	final int m;
+	final int n;
+	final int[] tail;
+	final int[] head;
+	final double[] gain;
+	final double[] cost;
+	final double[] lower;
+	final double[] upper;
+	final double[] rhs;
+
+	// State of the basis
+	final int[] basis;
+	final int[] position;
+	final boolean[] atUpper;
+	final double[] xB;
+	final double[][] binv;
+	final double[] pi;
+	final double[] alpha;
+	final double[] phaseCost;
+
+	int iterations = 0;
+	int maxIterations;
+	private int iterationLimit;
+	private int pricingStart = 0;
+	private int degenerate = 0;
+	private int sinceReinversion = 0;
+
+	public FlowSimplex(int rows, int[] t, int[] h, double[] g, double[] c, double[] lb, double[] ub, double[] b)
+	{
+		m = rows;
+		n = t.length;
+		tail = t;
+		head = h;
+		gain = g;
+		cost = c;
+		lower = lb;
+		upper = ub;
+		rhs = b;
+		basis = new int[m];
+		position = new int[n + m];
+		atUpper = new boolean[n + m];
+		xB = new double[m];
+		binv = new double[m][m];
+		pi = new double[m];
+		alpha = new double[m];
+		phaseCost = new double[m];
+		maxIterations = 50 * (m + n) + 10000;
+	}
+
+	/*
+	 * Sets the starting basis. start[i] is the column basic in row position i, or
+	 * -1 to use the artificial column of row i, which is fixed at zero and thus
+	 * driven out of the basis by phase one.
+	 */
+	public void setBasis(int[] start) {
+		Arrays.fill(position, -1);
+		for (int i = 0; i < m; i++) {
+			basis[i] = start[i] >= 0 ? start[i] : n + i;
+			position[basis[i]] = i;
+		}
+		for (int j = 0; j < n + m; j++)
+			if (position[j] >= 0 || j >= n || upper[j] == Double.POSITIVE_INFINITY)
+				atUpper[j] = false;
+	}
+
+	public int[] getBasis() {
+		return basis.clone();
+	}
+
+	public void setAtUpper(int j, boolean value) {
+		atUpper[j] = value && upper[j] != Double.POSITIVE_INFINITY;
+	}
+
+	/*
+	 * Round-off may leave a basis numerically singular after a pivot on a small
+	 * element. The solve then starts again from the basis of the artificial
+	 * columns, which is always regular, and returns NUMERICAL_FAILURE if that
+	 * happens once more.
+	 */
+	public int solve() {
+		iterationLimit = iterations + maxIterations;
+		degenerate = 0;
+		try {
+			return solveFromBasis();
+		} catch (IllegalStateException e) {
+			int[] artificial = new int[m];
+			Arrays.fill(artificial, -1);
+			setBasis(artificial);
+			degenerate = 0;
+			try {
+				return solveFromBasis();
+			} catch (IllegalStateException again) {
+				return NUMERICAL_FAILURE;
+			}
+		}
+	}
+
+	private int solveFromBasis() {
+		reinvert();
+		if (!phaseOne())
+			return iterations >= iterationLimit ? ITERATION_LIMIT : INFEASIBLE;
+		return phaseTwo();
+	}
+
+	public double getValue(int j) {
+		if (position[j] >= 0)
+			return xB[position[j]];
+		return nonbasicValue(j);
+	}
+
+	public double getObjective() {
+		double objective = 0;
+		for (int j = 0; j < n; j++)
+			if (cost[j] != 0)
+				objective += cost[j] * getValue(j);
+		return objective;
+	}
+
+	// Dual value of each row, the value on the last day of one unit on that day
+	public double[] getDuals() {
+		return pi.clone();
+	}
+
+	public int getIterations() {
+		return iterations;
+	}
+
+	private double lowerOf(int j) {
+		return j < n ? lower[j] : 0;
+	}
+
+	private double upperOf(int j) {
+		return j < n ? upper[j] : 0;
+	}
+
+	private double nonbasicValue(int j) {
+		return atUpper[j] ? upperOf(j) : lowerOf(j);
+	}
+
+	/*
+	 * Phase one: as long as there are basic variables out of their bounds, the
+	 * sum of the violations is minimized. Returns false when the problem is
+	 * infeasible.
+	 */
+	private boolean phaseOne() {
+		while (iterations < iterationLimit) {
+			if (sinceReinversion >= Math.max(100, m / 2))
+				reinvert();
+			boolean feasible = true;
+			for (int i = 0; i < m; i++) {
+				int j = basis[i];
+				if (xB[i] < lowerOf(j) - FEAS_TOL)
+					phaseCost[i] = 1;
+				else if (xB[i] > upperOf(j) + FEAS_TOL)
+					phaseCost[i] = -1;
+				else
+					phaseCost[i] = 0;
+				feasible &= phaseCost[i] == 0;
+			}
+			if (feasible)
+				return true;
+			computeDuals(phaseCost);
+			int q = price(true);
+			if (q < 0)
+				return false;
+			if (pivot(q, priceColumn(q, true), true) == UNBOUNDED)
+				return false;
+		}
+		return false;
+	}
+
+	private int phaseTwo() {
+		for (int i = 0; i < m; i++)
+			phaseCost[i] = basis[i] < n ? cost[basis[i]] : 0;
+		computeDuals(phaseCost);
+		while (iterations < iterationLimit) {
+			if (sinceReinversion >= Math.max(100, m / 2)) {
+				reinvert();
+				for (int i = 0; i < m; i++)
+					phaseCost[i] = basis[i] < n ? cost[basis[i]] : 0;
+				computeDuals(phaseCost);
+			}
+			int q = price(false);
+			if (q < 0)
+				return OPTIMAL;
+			double d = priceColumn(q, false);
+			int status = pivot(q, d, false);
+			if (status == UNBOUNDED)
+				return UNBOUNDED;
+		}
+		return ITERATION_LIMIT;
+	}
+
+	private double priceColumn(int j, boolean phaseOne) {
+		double d = phaseOne ? 0 : cost[j];
+		if (tail[j] >= 0)
+			d -= pi[tail[j]];
+		if (head[j] >= 0)
+			d += gain[j] * pi[head[j]];
+		return d;
+	}
+
+	/*
+	 * Partial pricing: the columns are scanned in blocks, starting where the
+	 * previous scan stopped, and the best candidate of the first block having one
+	 * enters the basis. After many degenerate pivots in a row the first candidate
+	 * found is taken instead (Bland's rule) to prevent cycling.
+	 */
+	private int price(boolean phaseOne) {
+		int block = Math.max(2000, n / 16);
+		boolean bland = degenerate > 50;
+		int best = -1;
+		double bestScore = 0;
+		int scanned = 0;
+		int j = bland ? 0 : pricingStart;
+		while (scanned < n) {
+			if (j >= n)
+				j = 0;
+			if (position[j] < 0 && lower[j] < upper[j]) {
+				double d = priceColumn(j, phaseOne);
+				double score = atUpper[j] ? -d : d;
+				if (score > OPT_TOL && score > bestScore) {
+					best = j;
+					bestScore = score;
+					if (bland)
+						return best;
+				}
+			}
+			j++;
+			scanned++;
+			if (best >= 0 && scanned % block == 0)
+				break;
+		}
+		pricingStart = j;
+		return best;
+	}
+
+	private int pivot(int q, double d, boolean phaseOne) {
+		iterations++;
+		int tq = tail[q];
+		int hq = head[q];
+		double gq = gain[q];
+		for (int i = 0; i < m; i++) {
+			double a = 0;
+			if (tq >= 0)
+				a += binv[i][tq];
+			if (hq >= 0)
+				a -= gq * binv[i][hq];
+			alpha[i] = a;
+		}
+		double dir = atUpper[q] ? -1 : 1;
+
+		// Ratio test
+		double step = upper[q] - lower[q];
+		int leave = -1;
+		boolean leaveAtUpper = false;
+		for (int i = 0; i < m; i++) {
+			double delta = dir * alpha[i];
+			if (Math.abs(delta) <= PIVOT_TOL)
+				continue;
+			int j = basis[i];
+			double lb = lowerOf(j);
+			double ub = upperOf(j);
+			double limit;
+			boolean hitsUpper;
+			if (delta > 0) {
+				// xB[i] decreases
+				if (phaseOne && xB[i] > ub + FEAS_TOL) {
+					limit = (xB[i] - ub) / delta;
+					hitsUpper = true;
+				} else if (phaseOne && xB[i] < lb - FEAS_TOL)
+					continue;
+				else {
+					limit = (xB[i] - lb) / delta;
+					hitsUpper = false;
+				}
+			} else {
+				// xB[i] increases
+				if (phaseOne && xB[i] < lb - FEAS_TOL) {
+					limit = (lb - xB[i]) / -delta;
+					hitsUpper = false;
+				} else if (phaseOne && xB[i] > ub + FEAS_TOL)
+					continue;
+				else {
+					if (ub == Double.POSITIVE_INFINITY)
+						continue;
+					limit = (ub - xB[i]) / -delta;
+					hitsUpper = true;
+				}
+			}
+			if (limit < 0)
+				limit = 0;
+			if (limit < step - PIVOT_TOL
+					|| (leave >= 0 && limit <= step + PIVOT_TOL && Math.abs(alpha[i]) > Math.abs(alpha[leave]))) {
+				step = limit;
+				leave = i;
+				leaveAtUpper = hitsUpper;
+			}
+		}
+		if (step == Double.POSITIVE_INFINITY)
+			return UNBOUNDED;
+		degenerate = step <= FEAS_TOL ? degenerate + 1 : 0;
+
+		for (int i = 0; i < m; i++)
+			xB[i] -= dir * step * alpha[i];
+		if (leave < 0) {
+			// The entering variable moves to its other bound
+			atUpper[q] = !atUpper[q];
+			return OPTIMAL;
+		}
+
+		double entering = atUpper[q] ? upper[q] - step : lower[q] + step;
+		int out = basis[leave];
+		position[out] = -1;
+		atUpper[out] = leaveAtUpper;
+		basis[leave] = q;
+		position[q] = leave;
+		atUpper[q] = false;
+		xB[leave] = entering;
+
+		// Update of the inverse and, in phase two, of the duals
+		double[] pivotRow = binv[leave];
+		double pivotValue = alpha[leave];
+		for (int k = 0; k < m; k++)
+			pivotRow[k] /= pivotValue;
+		for (int i = 0; i < m; i++) {
+			if (i == leave || alpha[i] == 0)
+				continue;
+			double factor = alpha[i];
+			double[] row = binv[i];
+			for (int k = 0; k < m; k++)
+				row[k] -= factor * pivotRow[k];
+		}
+		if (!phaseOne) {
+			phaseCost[leave] = cost[q];
+			for (int k = 0; k < m; k++)
+				pi[k] += d * pivotRow[k];
+		}
+		sinceReinversion++;
+		return OPTIMAL;
+	}
+
+	private void computeDuals(double[] c) {
+		Arrays.fill(pi, 0);
+		for (int i = 0; i < m; i++) {
+			if (c[i] == 0)
+				continue;
+			double[] row = binv[i];
+			for (int k = 0; k < m; k++)
+				pi[k] += c[i] * row[k];
+		}
+	}
+
+	/*
+	 * Recomputes the inverse of the basis by Gauss-Jordan elimination and the
+	 * values of the basic variables from the nonbasic ones.
+	 */
+	void reinvert() {
+		double[][] b = new double[m][m];
+		for (int i = 0; i < m; i++) {
+			int j = basis[i];
+			if (j >= n)
+				b[j - n][i] = 1;
+			else {
+				if (tail[j] >= 0)
+					b[tail[j]][i] += 1;
+				if (head[j] >= 0)
+					b[head[j]][i] -= gain[j];
+			}
+		}
+		for (int i = 0; i < m; i++) {
+			Arrays.fill(binv[i], 0);
+			binv[i][i] = 1;
+		}
+		for (int col = 0; col < m; col++) {
+			int p = col;
+			for (int r = col + 1; r < m; r++)
+				if (Math.abs(b[r][col]) > Math.abs(b[p][col]))
+					p = r;
+			if (Math.abs(b[p][col]) <= PIVOT_TOL)
+				throw new IllegalStateException("Singular basis");
+			double[] swap = b[p];
+			b[p] = b[col];
+			b[col] = swap;
+			swap = binv[p];
+			binv[p] = binv[col];
+			binv[col] = swap;
+			double pivotValue = b[col][col];
+			for (int k = 0; k < m; k++) {
+				b[col][k] /= pivotValue;
+				binv[col][k] /= pivotValue;
+			}
+			for (int r = 0; r < m; r++) {
+				double factor = b[r][col];
+				if (r == col || factor == 0)
+					continue;
+				for (int k = col; k < m; k++)
+					b[r][k] -= factor * b[col][k];
+				for (int k = 0; k < m; k++)
+					binv[r][k] -= factor * binv[col][k];
+			}
+		}
+
+		double[] residual = rhs.clone();
+		for (int j = 0; j < n; j++) {
+			if (position[j] >= 0)
+				continue;
+			double x = nonbasicValue(j);
+			if (x == 0)
+				continue;
+			if (tail[j] >= 0)
+				residual[tail[j]] -= x;
+			if (head[j] >= 0)
+				residual[head[j]] += gain[j] * x;
+		}
+		for (int i = 0; i < m; i++) {
+			double v = 0;
+			double[] row = binv[i];
+			for (int k = 0; k < m; k++)
+				v += row[k] * residual[k];
+			xB[i] = v;
+		}
+		sinceReinversion = 0;
+	}
+}
@@ -0,0 +1,124 @@
+import java.util.Arrays;
+
+/*
+ * Builds a good plan in a few milliseconds instead of solving the model, to
+ * start the solvers from it (a MIP start for CPLEX, the first incumbent of
+ * JavaFlowSolver) or to answer right away (see CFO.planFast).
+ *
+ * The plan starts by keeping every income in balance, and then goes through the
+ * days in order. balance holds the money carried from each day to the next
+ * under the investments chosen so far. On each day, an investment from that
+ * day to t2 can take at most the smallest balance of the days before t2,
+ * since the money is out of the account until then, and no more than its
+ * bound (see InvestmentBounds). Of the investments that can take at least
+ * minInv, the one earning the most in that window is made with all of it,
+ * which lowers the balance before t2 and raises it from t2 on by what the
+ * investment earns. This is repeated until no investment from the day can
+ * reach minInv, and the money matured is invested again when its day comes.
+ * The balance never goes below zero, so the plan is feasible whenever keeping
+ * everything in balance is.
+ */
+public class HeuristicPlanner
+{
+	final CFO cfo;
+	final boolean minInvestment;
+	// Investments made by the last plan
+	int investments;
+
+	public HeuristicPlanner(CFO c, boolean min)
+	{
+		cfo = c;
+		minInvestment = min;
+	}
+
+	/*
+	 * Values of the investment and balance arcs of the plan, numbered as in
+	 * CFO.indexArcs, with its objective, or null when the bills cannot be paid
+	 * from the balance or a day is not linked to the next one by a balance arc.
+	 */
+	public JavaFlowSolver.Result plan() {
+		long startTime = System.nanoTime();
+		cfo.indexArcs();
+		int last = cfo.nodes.size() - 1;
+		int[] from = cfo.invFrom;
+		int[] to = cfo.invTo;
+		double[] bound = cfo.getInvestmentBounds();
+		double minimum = minInvestment ? CFO.minInv : FlowSimplex.FEAS_TOL;
+
+		// Balance arc from each day to the next one
+		int[] next = new int[last];
+		Arrays.fill(next, -1);
+		for (int a = 0; a < cfo.balFrom.length; a++)
+			if (cfo.balTo[a] == cfo.balFrom[a] + 1)
+				next[cfo.balFrom[a]] = a;
+		double[] balance = new double[last + 1];
+		double carried = 0;
+		for (int idx = 0; idx < last; idx++) {
+			if (next[idx] < 0)
+				return null;
+			carried += cfo.nodes.netFlow[idx];
+			if (carried < -FlowSimplex.FEAS_TOL)
+				return null;
+			balance[idx] = carried;
+		}
+		balance[last] = carried;
+
+		double[] x = new double[from.length];
+		investments = 0;
+		for (int a = 0, idx = 0; idx < last && a < from.length; idx++) {
+			int first = a;
+			while (a < from.length && from[a] == idx)
+				a++;
+			while (invest(first, a, x, balance, bound, minimum))
+				investments++;
+		}
+
+		JavaFlowSolver.Result result = new JavaFlowSolver.Result();
+		result.x = x;
+		result.y = new double[cfo.balFrom.length];
+		for (int idx = 0; idx < last; idx++)
+			result.y[next[idx]] = Math.max(0, balance[idx]);
+		result.objective = balance[last];
+		result.status = "Feasible";
+		result.seconds = (System.nanoTime() - startTime) / 1e9;
+		result.firstIncumbent = result.seconds;
+		return result;
+	}
+
+	/*
+	 * Makes the best investment among the arcs first to end - 1, which start on
+	 * the same day, and returns whether there was one reaching the minimum.
+	 */
+	private boolean invest(int first, int end, double[] x, double[] balance, double[] bound, double minimum) {
+		int[] to = cfo.invTo;
+		int day = first < end ? cfo.invFrom[first] : 0;
+		int best = -1;
+		double bestAmount = 0;
+		double bestGain = 0;
+		// Smallest balance from day up to the day before the end of the arc
+		double window = Double.POSITIVE_INFINITY;
+		int reached = day;
+		for (int a = first; a < end; a++) {
+			while (reached < to[a])
+				window = Math.min(window, balance[reached++]);
+			double amount = Math.min(window, bound[a] - x[a]);
+			// Adding to an investment already made keeps it above the minimum
+			if (amount < (x[a] > 0 ? FlowSimplex.FEAS_TOL : minimum))
+				continue;
+			double gain = amount * (cfo.arcsCoeff.get(day, to[a]) - 1);
+			if (gain > bestGain) {
+				best = a;
+				bestAmount = amount;
+				bestGain = gain;
+			}
+		}
+		if (best < 0)
+			return false;
+		x[best] += bestAmount;
+		for (int idx = day; idx < to[best]; idx++)
+			balance[idx] -= bestAmount;
+		for (int idx = to[best]; idx < balance.length; idx++)
+			balance[idx] += bestGain;
+		return true;
+	}
+}
@@ -0,0 +1,95 @@
+import java.util.Arrays;
+
+/*
+ * Upper bound of the amount of each investment arc, to use instead of M in the
+ * either-or constraints. No arc can take more than the money present on the
+ * day it starts, and that money is at most what the incomes received up to
+ * that day would be worth had each one followed the path through the network
+ * that makes it grow the most, less the bills already paid: money spent on a
+ * bill could otherwise have been kept in balance up to that day.
+ *
+ * The growth of every income is found by a pass over the days in order, which
+ * carries the money in balance to the next day and through every investment
+ * arc starting on that day, so the work grows with the number of incomes times
+ * the number of arcs. The bills are only taken off when the balance arcs link
+ * every day to the next one, as the argument above needs; otherwise the bounds
+ * are only a bit looser. The bounds never exceed M, and an arc whose bound is
+ * below minInv can never be used by a plan that meets the minimum.
+ */
+public class InvestmentBounds
+{
+	final CFO cfo;
+	// Most money that can leave each day
+	double[] byDay;
+	int belowMinimum;
+
+	public InvestmentBounds(CFO c)
+	{
+		cfo = c;
+	}
+
+	/*
+	 * Bound of each investment arc, numbered as in CFO.indexArcs.
+	 */
+	public double[] compute() {
+		int last = cfo.nodes.size() - 1;
+		int[] from = cfo.invFrom;
+		int[] to = cfo.invTo;
+		// First arc from each day; arcs are numbered by start day
+		int[] first = new int[last + 1];
+		Arrays.fill(first, from.length);
+		for (int a = from.length - 1; a >= 0; a--)
+			first[from[a]] = a;
+		for (int idx = last - 1; idx >= 0; idx--)
+			first[idx] = Math.min(first[idx], first[idx + 1]);
+
+		byDay = new double[last];
+		double[] growth = new double[last + 1];
+		for (int source = 0; source < last; source++) {
+			double income = cfo.nodes.netFlow[source];
+			if (income <= 0)
+				continue;
+			Arrays.fill(growth, source, last + 1, 0);
+			growth[source] = 1;
+			for (int idx = source; idx < last; idx++) {
+				if (idx > source)
+					growth[idx] = Math.max(growth[idx], growth[idx - 1]);
+				byDay[idx] += income * growth[idx];
+				double g = growth[idx];
+				for (int a = first[idx]; a < from.length && from[a] == idx; a++) {
+					double reached = g * cfo.arcsCoeff.get(idx, to[a]);
+					if (reached > growth[to[a]])
+						growth[to[a]] = reached;
+				}
+			}
+		}
+
+		if (balanceLinksEveryDay(last)) {
+			double bills = 0;
+			for (int idx = 0; idx < last; idx++) {
+				bills -= Math.min(0, cfo.nodes.netFlow[idx]);
+				byDay[idx] = Math.max(0, byDay[idx] - bills);
+			}
+		}
+
+		double[] bound = new double[from.length];
+		belowMinimum = 0;
+		for (int a = 0; a < from.length; a++) {
+			bound[a] = Math.min(CFO.M, byDay[from[a]]);
+			if (bound[a] < CFO.minInv)
+				belowMinimum++;
+		}
+		return bound;
+	}
+
+	private boolean balanceLinksEveryDay(int last) {
+		boolean[] linked = new boolean[last];
+		for (int a = 0; a < cfo.balFrom.length; a++)
+			if (cfo.balTo[a] == cfo.balFrom[a] + 1)
+				linked[cfo.balFrom[a]] = true;
+		for (int idx = 0; idx < last; idx++)
+			if (!linked[idx])
+				return false;
+		return true;
+	}
+}
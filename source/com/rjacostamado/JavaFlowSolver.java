@@ -0,0 +1,285 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/*
+ * Solves the cash flow optimization problem without CPLEX. The network is a
+ * directed acyclic graph over the days of the planning horizon: investment
+ * arcs multiply the money by their coefficient and balance arcs carry it at
+ * a gain of one. Its linear relaxation is a generalized network flow problem,
+ * solved with FlowSimplex.
+ *
+ * When minInvestment is set, an investment is either zero or at least minInv
+ * (500000), as in the either-or constraints of CFO.optimizeCashFlow. This is
+ * enforced by a depth-first branch and bound on the investments violating the
+ * rule: one branch forbids the investment, the other one raises its lower
+ * bound to minInv. Each node starts from the optimal basis of its parent.
+ */
+public class JavaFlowSolver
+{
+	public static class Result
+	{
+		public String status;
+		public double objective = Double.NaN;
+		public double bestBound = Double.NaN;
+		// Values of the investment and balance arcs, numbered as in CFO.indexArcs
+		public double[] x;
+		public double[] y;
+		public int nodes;
+		public long iterations;
+		public double seconds;
+		// Seconds from the start of solve to the first plan found
+		public double firstIncumbent = Double.NaN;
+		// Dual values of the days in the linear relaxation (see FlowSimplex.getDuals)
+		public double[] duals;
+
+		public double getGap() {
+			if (Double.isNaN(objective))
+				return Double.NaN;
+			return Math.max(0, bestBound - objective) / Math.max(1e-10, Math.abs(objective));
+		}
+	}
+
+	// Branch and bound node: investments forced to zero (up = false) or to minInv
+	private static class BranchNode
+	{
+		final int[] arcs;
+		final boolean[] up;
+		final double bound;
+		final int[] basis;
+
+		BranchNode(int[] a, boolean[] u, double b, int[] s)
+		{
+			arcs = a;
+			up = u;
+			bound = b;
+			basis = s;
+		}
+
+		BranchNode child(int arc, boolean upBranch, double b, int[] s) {
+			int[] a = Arrays.copyOf(arcs, arcs.length + 1);
+			boolean[] u = Arrays.copyOf(up, up.length + 1);
+			a[arcs.length] = arc;
+			u[up.length] = upBranch;
+			return new BranchNode(a, u, b, s);
+		}
+	}
+
+	final CFO cfo;
+	final boolean minInvestment;
+	int nodeLimit = 100000;
+	double timeLimit = 3600;
+	double mipGap = 1e-4;
+	// Investments made by a known plan, such as a cached one (see SolutionCache), to start from
+	boolean[] startPlan;
+
+	private final int nInv;
+	private final int nBal;
+	private final double[] lower;
+	private final double[] upper;
+	// Most that can be invested in each arc (see InvestmentBounds)
+	private final double[] bound;
+	private final FlowSimplex lp;
+	private final int[] chain;
+	private long startTime;
+
+	public JavaFlowSolver(CFO c, boolean min)
+	{
+		cfo = c;
+		minInvestment = min;
+		nInv = cfo.invFrom.length;
+		nBal = cfo.balFrom.length;
+		int rows = cfo.nodes.size() - 1;
+
+		int[] tail = new int[nInv + nBal];
+		int[] head = new int[nInv + nBal];
+		double[] gain = new double[nInv + nBal];
+		double[] cost = new double[nInv + nBal];
+		lower = new double[nInv + nBal];
+		upper = new double[nInv + nBal];
+		bound = cfo.getInvestmentBounds().clone();
+		// Investments that can never reach the minimum can only be zero
+		if (minInvestment)
+			for (int a = 0; a < nInv; a++)
+				if (bound[a] < CFO.minInv)
+					bound[a] = 0;
+		for (int a = 0; a < nInv; a++) {
+			tail[a] = cfo.invFrom[a];
+			gain[a] = cfo.arcsCoeff.get(cfo.invFrom[a], cfo.invTo[a]);
+			head[a] = cfo.invTo[a] < rows ? cfo.invTo[a] : -1;
+			cost[a] = head[a] < 0 ? gain[a] : 0;
+			upper[a] = bound[a];
+		}
+		chain = new int[rows];
+		Arrays.fill(chain, -1);
+		for (int a = 0; a < nBal; a++) {
+			int j = nInv + a;
+			tail[j] = cfo.balFrom[a];
+			gain[j] = 1;
+			head[j] = cfo.balTo[a] < rows ? cfo.balTo[a] : -1;
+			cost[j] = head[j] < 0 ? 1 : 0;
+			upper[j] = Double.POSITIVE_INFINITY;
+			// Carrying the balance to the next day gives a basis that is easy to start from
+			if (cfo.balTo[a] == cfo.balFrom[a] + 1)
+				chain[cfo.balFrom[a]] = j;
+		}
+		double[] rhs = new double[rows];
+		for (int idx = 0; idx < rows; idx++)
+			rhs[idx] = cfo.nodes.netFlow[idx];
+
+		lp = new FlowSimplex(rows, tail, head, gain, cost, lower, upper, rhs);
+	}
+
+	public Result solve() {
+		startTime = System.nanoTime();
+		Result result = new Result();
+		double incumbent = Double.NEGATIVE_INFINITY;
+		if (minInvestment) {
+			incumbent = keepInBalance(result);
+			if (startPlan != null)
+				incumbent = Math.max(incumbent, fromStartPlan(result, incumbent));
+		}
+		// Largest bound of the nodes whose relaxation could not be solved, which are not explored
+		double unexplored = Double.NEGATIVE_INFINITY;
+		String unfinished = null;
+		ArrayDeque<BranchNode> open = new ArrayDeque<>();
+		open.push(new BranchNode(new int[0], new boolean[0], Double.POSITIVE_INFINITY, chain));
+
+		while (!open.isEmpty()) {
+			if (result.nodes >= nodeLimit || (System.nanoTime() - startTime) / 1e9 > timeLimit)
+				break;
+			BranchNode node = open.pop();
+			if (isPruned(node.bound, incumbent))
+				continue;
+			result.nodes++;
+
+			for (int a = 0; a < nInv; a++) {
+				lower[a] = 0;
+				upper[a] = bound[a];
+			}
+			for (int k = 0; k < node.arcs.length; k++)
+				if (node.up[k])
+					lower[node.arcs[k]] = CFO.minInv;
+				else
+					upper[node.arcs[k]] = 0;
+			lp.setBasis(node.basis);
+			int status = lp.solve();
+			if (status != FlowSimplex.OPTIMAL) {
+				if (result.nodes == 1 && status != FlowSimplex.INFEASIBLE)
+					result.status = statusName(status);
+				if (status == FlowSimplex.ITERATION_LIMIT || status == FlowSimplex.NUMERICAL_FAILURE) {
+					unexplored = Math.max(unexplored, node.bound);
+					unfinished = statusName(status);
+				}
+				continue;
+			}
+			double bound = lp.getObjective();
+			if (result.nodes == 1) {
+				result.bestBound = bound;
+				result.duals = lp.getDuals();
+			}
+			if (isPruned(bound, incumbent))
+				continue;
+
+			// Investment breaking the minimum by the widest margin
+			int branch = -1;
+			double violation = FlowSimplex.FEAS_TOL;
+			if (minInvestment)
+				for (int a = 0; a < nInv; a++) {
+					double v = lp.getValue(a);
+					double margin = Math.min(v, CFO.minInv - v);
+					if (margin > violation) {
+						violation = margin;
+						branch = a;
+					}
+				}
+
+			if (branch < 0) {
+				incumbent = bound;
+				storeSolution(result, bound);
+				continue;
+			}
+
+			// The branch closer to the current value is explored first
+			int[] basis = lp.getBasis();
+			boolean upFirst = lp.getValue(branch) >= CFO.minInv / 2;
+			open.push(node.child(branch, !upFirst, bound, basis));
+			open.push(node.child(branch, upFirst, bound, basis));
+		}
+
+		result.iterations = lp.getIterations();
+		boolean explored = open.isEmpty() && unfinished == null;
+		if (result.x != null) {
+			double bestBound = Math.max(incumbent, unexplored);
+			for (BranchNode node : open)
+				bestBound = Math.max(bestBound, node.bound);
+			if (explored)
+				result.bestBound = incumbent;
+			else if (!Double.isNaN(result.bestBound))
+				result.bestBound = Math.min(bestBound, result.bestBound);
+			else
+				result.bestBound = bestBound;
+			result.status = explored ? "Optimal" : "Feasible";
+		} else if (result.status == null)
+			result.status = explored ? "Infeasible" : unfinished != null ? unfinished : "Unknown";
+		result.seconds = (System.nanoTime() - startTime) / 1e9;
+		return result;
+	}
+
+	/*
+	 * A plan that makes no investment at all meets the minimum trivially, so when
+	 * the balance alone can pay for every outflow it is the first incumbent.
+	 */
+	private double keepInBalance(Result result) {
+		Arrays.fill(lower, 0, nInv, 0);
+		Arrays.fill(upper, 0, nInv, 0);
+		lp.setBasis(chain);
+		if (lp.solve() != FlowSimplex.OPTIMAL)
+			return Double.NEGATIVE_INFINITY;
+		double objective = lp.getObjective();
+		storeSolution(result, objective);
+		return objective;
+	}
+
+	/*
+	 * The plan making the investments of startPlan, each one at least minInv,
+	 * and no other, with the best amounts for them, is an incumbent when it is
+	 * feasible, as a MIP start solved with its integers fixed is for CPLEX.
+	 */
+	private double fromStartPlan(Result result, double incumbent) {
+		for (int a = 0; a < nInv; a++) {
+			boolean made = startPlan[a] && bound[a] >= CFO.minInv;
+			lower[a] = made ? CFO.minInv : 0;
+			upper[a] = made ? bound[a] : 0;
+		}
+		lp.setBasis(chain);
+		if (lp.solve() != FlowSimplex.OPTIMAL || lp.getObjective() <= incumbent)
+			return Double.NEGATIVE_INFINITY;
+		double objective = lp.getObjective();
+		storeSolution(result, objective);
+		return objective;
+	}
+
+	private void storeSolution(Result result, double objective) {
+		if (result.x == null)
+			result.firstIncumbent = (System.nanoTime() - startTime) / 1e9;
+		result.objective = objective;
+		result.x = new double[nInv];
+		result.y = new double[nBal];
+		for (int a = 0; a < nInv; a++)
+			result.x[a] = lp.getValue(a);
+		for (int a = 0; a < nBal; a++)
+			result.y[a] = lp.getValue(nInv + a);
+	}
+
+	private static String statusName(int status) {
+		if (status == FlowSimplex.UNBOUNDED)
+			return "Unbounded";
+		if (status == FlowSimplex.NUMERICAL_FAILURE)
+			return "NumericalFailure";
+		return "IterationLimit";
+	}
+
+	private boolean isPruned(double bound, double incumbent) {
+		return incumbent > Double.NEGATIVE_INFINITY && bound - incumbent <= mipGap * Math.abs(incumbent);
+	}
+}
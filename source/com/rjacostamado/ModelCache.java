@@ -0,0 +1,303 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLPMatrix;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloNumVarType;
+import ilog.cplex.IloCplex;
+
+/*
+ * Folder of networks and models built before, so that solving again the same
+ * problem, as tuning and reporting do, skips building them. An entry is named
+ * after the SHA-256 of everything it was built from: the dates of the horizon
+ * and of the rates, the net flow of every day (the incomes and bills of the
+ * household), the whole table of interest rates, M, minInv and the options
+ * changing the network or the model. Any change to them gives a new name, so
+ * entries are never stale, only unused.
+ *
+ * The network (<key>.network) holds the arcs numbered as in CFO.indexArcs,
+ * after the presolve if any, with the coefficients and the bounds (see
+ * InvestmentBounds) of the investment arcs, little endian:
+ *
+ *   0  "CFON", int version (1), int nodes, int investment arcs (nInv),
+ *      int balance arcs (nBal), int padding
+ *   24 int invFrom[nInv], int invTo[nInv], int balFrom[nBal], int balTo[nBal],
+ *      double coeff[nInv], double bound[nInv]
+ *
+ * The CPLEX model built from it (<key>.sav) is exported by CPLEX in its own
+ * binary format and imported back instead of calling buildModel.
+ *
+ * Entries are written to a temporary file and then renamed, so runs sharing
+ * the folder never read half an entry. Reading an entry marks it as used
+ * (its modification time). After every write, the entries unused for more
+ * than maxAgeDays are deleted, and then the least recently used ones until
+ * the folder holds at most maxBytes.
+ */
+public class ModelCache
+{
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 24;
+	static final String NETWORK = ".network";
+	static final String MODEL = ".sav";
+	static final String PARTIAL = ".partial-";
+
+	final File folder;
+	long maxBytes = 2L << 30;
+	double maxAgeDays = 30;
+
+	public ModelCache(String path)
+	{
+		folder = new File(path);
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IllegalArgumentException("Cannot create the model cache folder " + path);
+	}
+
+	/*
+	 * Key of the network of cfo, whose nodes must have been created and given
+	 * their net flows (see CFO.setSinkAndSourceNodes).
+	 */
+	static String networkKey(CFO cfo, boolean presolve) {
+		MessageDigest digest = sha256();
+		update(digest, "network " + VERSION);
+		update(digest, cfo.start + " " + cfo.end + " " + cfo.rates);
+		update(digest, "M " + CFO.M + " minInv " + CFO.minInv + " presolve " + presolve + " chain " + cfo.balanceChain);
+		ByteBuffer flows = ByteBuffer.allocate(8 * cfo.nodes.size());
+		for (int idx = 0; idx < cfo.nodes.size(); idx++)
+			flows.putDouble(cfo.nodes.netFlow[idx]);
+		digest.update(flows.array());
+		CFO.getInterestRates().update(digest);
+		return hex(digest.digest());
+	}
+
+	// Key of the model built by buildModel from the network with the given key
+	static String modelKey(CFO cfo) {
+		MessageDigest digest = sha256();
+		update(digest, "model " + VERSION + " " + cfo.networkKey);
+		update(digest, "semiContinuous " + cfo.semiContinuous + " debug " + CFO.debug);
+		return hex(digest.digest());
+	}
+
+	/*
+	 * Gives cfo the arcs, coefficients and bounds of its network when the cache
+	 * holds it, and returns whether it did. Either way cfo.networkKey is set, for
+	 * saveNetwork and the model.
+	 */
+	public boolean loadNetwork(CFO cfo, boolean presolve) throws IOException {
+		cfo.networkKey = networkKey(cfo, presolve);
+		File file = new File(folder, cfo.networkKey + NETWORK);
+		if (!file.isFile())
+			return false;
+		RunMetrics.Phase phase = cfo.metrics.start("cache_load");
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			int nodes = cfo.nodes.size();
+			if (mapped.get(0) != 'C' || mapped.get(1) != 'F' || mapped.get(2) != 'O' || mapped.get(3) != 'N'
+					|| mapped.getInt(4) != VERSION || mapped.getInt(8) != nodes) {
+				System.out.println("Ignoring the cached network " + file + ", written for another network or version");
+				return false;
+			}
+			int nInv = mapped.getInt(12);
+			int nBal = mapped.getInt(16);
+			mapped.position(HEADER_BYTES);
+			cfo.invFrom = ints(mapped, nInv);
+			cfo.invTo = ints(mapped, nInv);
+			cfo.balFrom = ints(mapped, nBal);
+			cfo.balTo = ints(mapped, nBal);
+			cfo.arcsCoeff = new ArcCoefficients(cfo.rates, nodes);
+			for (int a = 0; a < nInv; a++)
+				cfo.arcsCoeff.put(cfo.invFrom[a], cfo.invTo[a], mapped.getDouble());
+			double[] bound = new double[nInv];
+			mapped.asDoubleBuffer().get(bound);
+			cfo.cachedNetwork(bound);
+		} finally {
+			phase.end();
+		}
+		file.setLastModified(System.currentTimeMillis());
+		cfo.metrics.set("network_cache_hit", 1);
+		System.out.println("Network loaded from " + file);
+		return true;
+	}
+
+	/*
+	 * Saves the network of cfo, whose arcs must have been numbered (see
+	 * CFO.indexArcs), under the key set by loadNetwork.
+	 */
+	public void saveNetwork(CFO cfo) throws IOException {
+		int nInv = cfo.invFrom.length;
+		int nBal = cfo.balFrom.length;
+		double[] bound = cfo.getInvestmentBounds();
+		long size = HEADER_BYTES + 8L * nBal + 24L * nInv;
+		if (size > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Network of " + nInv + " investment arcs is too large to cache");
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(new byte[] { 'C', 'F', 'O', 'N' });
+		buffer.putInt(VERSION).putInt(cfo.nodes.size()).putInt(nInv).putInt(nBal).putInt(0);
+		for (int[] column : new int[][] { cfo.invFrom, cfo.invTo, cfo.balFrom, cfo.balTo }) {
+			buffer.asIntBuffer().put(column);
+			buffer.position(buffer.position() + 4 * column.length);
+		}
+		for (int a = 0; a < nInv; a++)
+			buffer.putDouble(cfo.arcsCoeff.get(cfo.invFrom[a], cfo.invTo[a]));
+		buffer.asDoubleBuffer().put(bound);
+		buffer.position(0);
+
+		File partial = partial(cfo.networkKey + NETWORK, "");
+		try (RandomAccessFile file = new RandomAccessFile(partial, "rw"); FileChannel channel = file.getChannel()) {
+			file.setLength(0);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+		commit(partial, cfo.networkKey + NETWORK);
+	}
+
+	/*
+	 * Imports into smartSaver the model of cfo saved before and returns its
+	 * variables, or returns null when there is none, in which case the model must
+	 * be built as usual (see CFO.buildModel) and then saved with saveModel.
+	 */
+	public CFO.Model loadModel(CFO cfo, IloCplex smartSaver) throws IloException {
+		if (cfo.networkKey == null)
+			return null;
+		File file = new File(folder, modelKey(cfo) + MODEL);
+		if (!file.isFile())
+			return null;
+		long startT = System.nanoTime();
+		RunMetrics.Phase phase = cfo.metrics.start("cache_load");
+		int nInv = cfo.invFrom.length;
+		int nBal = cfo.balFrom.length;
+		int last = cfo.nodes.size() - 1;
+		CFO.Model model = new CFO.Model();
+		try {
+			smartSaver.importModel(file.getPath());
+			/*
+			 * An imported model is a single matrix whose columns and rows are in the
+			 * order buildModel added them: x, z unless semi-continuous, y, and the flow
+			 * constraints first.
+			 */
+			Iterator<?> matrices = smartSaver.LPMatrixIterator();
+			IloLPMatrix matrix = matrices.hasNext() ? (IloLPMatrix) matrices.next() : null;
+			int nZ = cfo.semiContinuous ? 0 : nInv;
+			if (matrix == null || matrix.getNcols() != nInv + nZ + nBal || matrix.getNrows() < last
+					|| (nZ > 0 && matrix.getNumVars()[nInv].getType() != IloNumVarType.Bool)) {
+				System.out.println("Ignoring the cached model " + file + ", which does not match the network");
+				smartSaver.clearModel();
+				return null;
+			}
+			IloNumVar[] vars = matrix.getNumVars();
+			model.x = Arrays.copyOfRange(vars, 0, nInv);
+			if (nZ > 0) {
+				model.z = new IloIntVar[nZ];
+				for (int a = 0; a < nZ; a++)
+					model.z[a] = (IloIntVar) vars[nInv + a];
+			}
+			model.y = Arrays.copyOfRange(vars, nInv + nZ, nInv + nZ + nBal);
+			model.consFlow = Arrays.copyOf(matrix.getRanges(), last);
+			model.objective = (IloLinearNumExpr) smartSaver.getObjective().getExpr();
+			cfo.metrics.set("variables", matrix.getNcols());
+			cfo.metrics.set("constraints", matrix.getNrows());
+		} finally {
+			phase.end();
+		}
+		file.setLastModified(System.currentTimeMillis());
+		cfo.metrics.set("model_cache_hit", 1);
+		System.out.println("Model loaded from " + file + " in " + (System.nanoTime() - startT) / 1_000_000_000.0
+				+ " seconds");
+		return model;
+	}
+
+	/*
+	 * Exports the model just built in smartSaver for the network of cfo, when
+	 * that network came through loadNetwork.
+	 */
+	public void saveModel(CFO cfo, IloCplex smartSaver) throws IloException, IOException {
+		if (cfo.networkKey == null)
+			return;
+		String name = modelKey(cfo) + MODEL;
+		// CPLEX picks the format from the extension
+		File partial = partial(name, MODEL);
+		smartSaver.exportModel(partial.getPath());
+		commit(partial, name);
+	}
+
+	// File only this thread of this run writes to
+	private File partial(String name, String extension) {
+		return new File(folder, name + PARTIAL + Long.toHexString(System.nanoTime()) + "-"
+				+ Thread.currentThread().getId() + extension);
+	}
+
+	private void commit(File partial, String name) throws IOException {
+		Files.move(partial.toPath(), new File(folder, name).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		evict();
+	}
+
+	/*
+	 * Deletes the entries unused for more than maxAgeDays and then the least
+	 * recently used ones until the folder holds at most maxBytes. Files being
+	 * written by other runs are left alone unless they are as old.
+	 */
+	synchronized void evict() {
+		File[] files = folder.listFiles();
+		if (files == null)
+			return;
+		long oldest = System.currentTimeMillis() - (long) (maxAgeDays * 24 * 3600 * 1000);
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		long total = 0;
+		for (File file : files)
+			total += file.length();
+		for (File file : files) {
+			boolean stale = file.lastModified() < oldest;
+			if (!stale && (total <= maxBytes || file.getName().contains(PARTIAL)))
+				continue;
+			long length = file.length();
+			if (file.delete()) {
+				total -= length;
+				System.out.println("Evicted " + file + " from the model cache");
+			}
+		}
+	}
+
+	private static int[] ints(ByteBuffer buffer, int n) {
+		int[] values = new int[n];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + 4 * n);
+		return values;
+	}
+
+	static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	static void update(MessageDigest digest, String s) {
+		digest.update(s.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+
+	static String hex(byte[] bytes) {
+		StringBuilder s = new StringBuilder(2 * bytes.length);
+		for (byte b : bytes)
+			s.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+		return s.toString();
+	}
+}
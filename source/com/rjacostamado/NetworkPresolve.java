@@ -0,0 +1,131 @@
+import java.util.Arrays;
+
+/*
+ * Removes investment arcs that an optimal plan never needs, between
+ * setArcsCoeff and the solve. Money can always be kept in balance from one day
+ * to the next at no cost, so money available earlier is worth at least as much
+ * as the same money later. Two rules follow from this:
+ *
+ * - Earlier maturity: an investment from t1 to t2 is dropped when another one
+ *   from t1 matures before t2 with a coefficient at least as large. Its money
+ *   can mature earlier and wait in balance until t2. This removes, for
+ *   instance, the investments maturing on a 31st, which earn the same as the
+ *   ones maturing on the 30th.
+ *
+ * - Earlier start: on a day with no new money, that is, no income and no
+ *   investment maturing after the first rule, the money available was already
+ *   there the day before. An investment from such a day to t2 is dropped when
+ *   the one from the day before to t2 has a coefficient at least as large.
+ *
+ * Moving an investment this way may add it to another one, and the sum of two
+ * amounts that are either zero or at least minInv is either zero or at least
+ * minInv. The rules are only applied when no amount can ever reach M, as
+ * checked from the incomes and the largest growth of the money over the
+ * horizon, and when the balance arcs of every day reach all the days up to
+ * their last one. Under those conditions the optimal objective is unchanged.
+ */
+public class NetworkPresolve
+{
+	final CFO cfo;
+	int byMaturity;
+	int byStart;
+	int remaining;
+	String skipped;
+
+	public NetworkPresolve(CFO c)
+	{
+		cfo = c;
+	}
+
+	public boolean run() {
+		int last = cfo.nodes.size() - 1;
+		ArcGraph graph = cfo.arcs;
+		int[] first = graph.first;
+		int[] head = graph.head;
+		double[] coeff = new double[graph.size()];
+		for (int idx = 0; idx < last; idx++)
+			for (int a = first[idx]; a < first[idx + 1]; a++)
+				coeff[a] = cfo.arcsCoeff.get(idx, head[a]);
+
+		if (!balanceReachesEveryDay(last)) {
+			skipped = "the balance arcs do not link every day to the following ones";
+			return false;
+		}
+		double bound = largestAmount(last, graph, coeff);
+		if (bound > CFO.M) {
+			skipped = "amounts up to " + bound + " could exceed M";
+			return false;
+		}
+
+		// Earlier maturity
+		boolean[] keep = new boolean[graph.size()];
+		boolean[] matures = new boolean[last + 1];
+		for (int idx = 0; idx < last; idx++) {
+			double best = 0;
+			for (int a = first[idx]; a < first[idx + 1]; a++)
+				if (coeff[a] > best) {
+					best = coeff[a];
+					keep[a] = true;
+					matures[head[a]] = true;
+				} else
+					byMaturity++;
+		}
+
+		// Earlier start, against the arcs kept by the first rule on the day before
+		boolean[] kept = keep.clone();
+		for (int idx = 1; idx < last; idx++) {
+			if (matures[idx] || cfo.nodes.netFlow[idx] > 0)
+				continue;
+			for (int a = first[idx]; a < first[idx + 1]; a++) {
+				if (!keep[a])
+					continue;
+				int prev = Arrays.binarySearch(head, first[idx - 1], first[idx], head[a]);
+				if (prev >= 0 && keep[prev] && coeff[prev] >= coeff[a]) {
+					kept[a] = false;
+					byStart++;
+				}
+			}
+		}
+
+		cfo.arcs = graph.filter(kept);
+		remaining = cfo.arcs.size();
+		return true;
+	}
+
+	/*
+	 * Money reaching a day by the balance arcs can be brought to the day before
+	 * only if the balance arcs of each day go to every following day up to the
+	 * last one they reach.
+	 */
+	private boolean balanceReachesEveryDay(int last) {
+		if (cfo.balanceChain)
+			return true;
+		for (int idx = 0; idx < last; idx++) {
+			int begin = cfo.intArcs.first[idx];
+			int count = cfo.intArcs.first[idx + 1] - begin;
+			if (count == 0 || cfo.intArcs.head[begin] != idx + 1
+					|| cfo.intArcs.head[begin + count - 1] != idx + count)
+				return false;
+		}
+		return true;
+	}
+
+	/*
+	 * No amount is larger than all the incomes grown by the best sequence of
+	 * investments over the horizon, worked out day by day.
+	 */
+	private double largestAmount(int last, ArcGraph graph, double[] coeff) {
+		double[] growth = new double[last + 1];
+		Arrays.fill(growth, 1);
+		double incomes = 0;
+		for (int idx = 0; idx < last; idx++) {
+			if (idx > 0)
+				growth[idx] = Math.max(growth[idx], growth[idx - 1]);
+			for (int a = graph.first[idx]; a < graph.first[idx + 1]; a++)
+				growth[graph.head[a]] = Math.max(growth[graph.head[a]], growth[idx] * coeff[a]);
+			incomes += Math.max(0, cfo.nodes.netFlow[idx]);
+		}
+		growth[last] = Math.max(growth[last], growth[last - 1]);
+		return incomes * growth[last];
+	}
+}
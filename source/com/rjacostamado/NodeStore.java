@@ -0,0 +1,87 @@
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/*
+ * Nodes of the network, one per day of the horizon, kept as arrays indexed by
+ * the number of the node instead of as objects. Days are consecutive, so the
+ * node of a date is its epoch day less the epoch day of the first node, and
+ * the date of a node is worked out from its epoch day when it is needed.
+ * netFlow holds the money received (positive) or paid (negative) each day
+ * (see CFO.setSinkAndSourceNodes).
+ */
+public class NodeStore
+{
+	final int[] epochDay;
+	final double[] netFlow;
+
+	// Nodes from first to last, both included
+	public NodeStore(LocalDate first, LocalDate last)
+	{
+		long days = last.toEpochDay() - first.toEpochDay();
+		if (days < 0 || days >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException("There are no nodes between " + first + " and " + last);
+		epochDay = new int[(int) days + 1];
+		netFlow = new double[epochDay.length];
+		int day = (int) first.toEpochDay();
+		for (int idx = 0; idx < epochDay.length; idx++)
+			epochDay[idx] = day + idx;
+	}
+
+	private NodeStore(int[] e, double[] n)
+	{
+		epochDay = e;
+		netFlow = n;
+	}
+
+	public int size() {
+		return epochDay.length;
+	}
+
+	public LocalDate date(int idx) {
+		return LocalDate.ofEpochDay(epochDay[idx]);
+	}
+
+	// Date of every node, for loops over the arcs that need them all
+	public LocalDate[] dates() {
+		LocalDate[] dates = new LocalDate[epochDay.length];
+		for (int idx = 0; idx < dates.length; idx++)
+			dates[idx] = LocalDate.ofEpochDay(epochDay[idx]);
+		return dates;
+	}
+
+	/*
+	 * Number of the node of a date, which may be negative or not below size()
+	 * for dates outside of the horizon.
+	 */
+	public int offset(LocalDate date) {
+		return (int) (date.toEpochDay() - epochDay[0]);
+	}
+
+	// Number of the node of a date of the horizon
+	public int index(LocalDate date) {
+		int idx = offset(date);
+		if (idx < 0 || idx >= epochDay.length)
+			throw new IllegalArgumentException(date + " is not between " + date(0) + " and " + date(epochDay.length - 1));
+		return idx;
+	}
+
+	public double getNetFlow(int idx) {
+		return netFlow[idx];
+	}
+
+	public int getFinDaysBetween(int from, int to) {
+		return FinDateCalc.getFinDaysBetween(date(from), date(to));
+	}
+
+	// The first n nodes, with their net flows
+	public NodeStore prefix(int n) {
+		return new NodeStore(Arrays.copyOf(epochDay, n), Arrays.copyOf(netFlow, n));
+	}
+
+	// The same nodes with other net flows, one per node
+	public NodeStore withNetFlow(double[] n) {
+		if (n.length != epochDay.length)
+			throw new IllegalArgumentException(n.length + " net flows for " + epochDay.length + " nodes");
+		return new NodeStore(epochDay, n);
+	}
+}
@@ -0,0 +1,155 @@
+import ilog.cplex.*;
+import ilog.concert.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Solves the cash flow optimization problem once for every combination of
+ * the solver parameters below. The combinations are shared by a pool of
+ * workers, each one with its own copy of the model, so that the result of one
+ * combination does not depend on the ones solved before it. Every solve takes
+ * as many permits of the thread budget as threads it is allowed to use, which
+ * bounds the number of threads used by CPLEX across all workers.
+ *
+ * Each finished combination is appended to sweep_between_<start>_and_<end>.csv
+ * with its status, objective, gap, node count and duration. Combinations
+ * already in that file are skipped, so a sweep that is killed resumes where it
+ * stopped when it is run again.
+ */
+public class ParameterSweep
+{
+	static final String HEADER = SolverConfig.HEADER + ",Status,Objective,Gap,Nodes,Duration";
+
+	final CFO cfo;
+	final int workers;
+	final Semaphore threadBudget;
+	final String resultsFile;
+	// seconds, zero for no limit
+	double timeLimit = 0;
+
+	private final HashSet<String> done = new HashSet<>();
+
+	public ParameterSweep(CFO c, int w, int budget)
+	{
+		cfo = c;
+		workers = w;
+		threadBudget = new Semaphore(Math.max(budget, max(SolverConfig.threadCounts)), true);
+		resultsFile = cfo.getOutputName("sweep") + ".csv";
+	}
+
+	public void run() throws IOException, InterruptedException {
+		readFinished();
+		int total = SolverConfig.getNumberOfCombinations();
+		System.out.println(done.size() + " of " + total + " combinations already in " + resultsFile);
+
+		cfo.indexArcs();
+		AtomicInteger next = new AtomicInteger(0);
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		for (int w = 0; w < workers; w++)
+			pool.execute(() -> work(next, total));
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	}
+
+	private void work(AtomicInteger next, int total) {
+		try (IloCplex smartSaver = new IloCplex()) {
+			smartSaver.setOut(null);
+			CFO.Model model = cfo.buildModel(smartSaver);
+			int combination;
+			while ((combination = next.getAndIncrement()) < total) {
+				SolverConfig config = SolverConfig.get(combination);
+				String key = config.toString();
+				synchronized (done) {
+					if (done.contains(key))
+						continue;
+				}
+
+				String status;
+				double objective = Double.NaN;
+				double gap = Double.NaN;
+				long nodes = 0;
+				double duration = 0;
+				threadBudget.acquire(config.threads);
+				try {
+					// Every combination starts from scratch, without the solution of the previous one
+					config.applyFromScratch(smartSaver);
+					if (timeLimit > 0)
+						smartSaver.setParam(IloCplex.Param.TimeLimit, timeLimit);
+
+					long startTime = System.nanoTime();
+					boolean solved = smartSaver.solve();
+					duration = (System.nanoTime() - startTime) / 1_000_000_000.0;
+					status = smartSaver.getStatus().toString();
+					nodes = smartSaver.getNnodes64();
+					if (solved) {
+						objective = smartSaver.getObjValue();
+						gap = smartSaver.getMIPRelativeGap();
+					}
+				} catch (IloException e) {
+					// e.g. a value out of the range of its parameter
+					status = "Error: " + e.getMessage();
+				} finally {
+					threadBudget.release(config.threads);
+				}
+				logResultsToCSV(key, status, objective, gap, nodes, duration);
+				System.out.println("Combination " + (combination + 1) + " of " + total + ": " + status
+						+ ", objective " + objective + " in " + duration + " seconds");
+			}
+		} catch (IloException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void readFinished() throws IOException {
+		File file = new File(resultsFile);
+		if (!file.exists())
+			return;
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String row = reader.readLine();
+			while ((row = reader.readLine()) != null) {
+				String[] fields = row.split(",");
+				if (fields.length < SolverConfig.FIELDS)
+					continue;
+				done.add(SolverConfig.parse(fields, 0).toString());
+			}
+		}
+	}
+
+	private void logResultsToCSV(String key, String status, double objective, double gap, long nodes, double duration) {
+		synchronized (done) {
+			File file = new File(resultsFile);
+			boolean isFileNew = !file.exists() || file.length() == 0;
+			try (FileWriter fileWriter = new FileWriter(file, true); // Append mode
+					PrintWriter printWriter = new PrintWriter(fileWriter)) {
+				// If the file is new or empty, write the header first
+				if (isFileNew)
+					printWriter.println(HEADER);
+				printWriter.printf(Locale.US, "%s,%s,%.6f,%.6f,%d,%.6f\n", key, status.replace(',', ';'), objective, gap,
+						nodes, duration);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			done.add(key);
+		}
+	}
+
+	private static int max(int[] values) {
+		int max = values[0];
+		for (int v : values)
+			max = Math.max(max, v);
+		return max;
+	}
+}
@@ -0,0 +1,290 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.LocalDate;
+import java.util.Locale;
+
+/*
+ * Writes the plan found by a solver, given the values of the investment (x)
+ * and balance (y) arcs numbered as in CFO.indexArcs, which are already in the
+ * order of their start and end days. Only the arcs carrying more than one unit
+ * are written, investments first.
+ *
+ * The csv (cfo_between_<start>_and_<end>.csv) is written a row at a time
+ * through one reused StringBuilder, with the dates of the nodes formatted once
+ * and the amounts formatted as DecimalFormat("#.##") would in Locale.US,
+ * always with a point, without creating objects for each of them.
+ *
+ * The binary file (same name, extension .cfop) holds the same rows by column,
+ * little endian, so it can be memory mapped by the programs reading it:
+ *
+ *   0  "CFOP", int version (1), int rows, int padding
+ *   16 long start and long end (epoch days), double objective
+ *   40 int from[rows], int to[rows] (days since start), int days[rows]
+ *      (financial days), byte type[rows] (0 investment, 1 balance), padding
+ *      up to a multiple of 8, double value[rows], double interests[rows]
+ */
+public class PlanWriter
+{
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 40;
+
+	final CFO cfo;
+	final double[] x;
+	final double[] y;
+	final double objective;
+
+	private int rows;
+	private int[] from;
+	private int[] to;
+	private int[] days;
+	private byte[] type;
+	private double[] value;
+	private double[] interests;
+
+	public PlanWriter(CFO c, double[] xValues, double[] yValues, double obj)
+	{
+		cfo = c;
+		x = xValues;
+		y = yValues;
+		objective = obj;
+		collect();
+	}
+
+	/*
+	 * Plan of cfo read back from the binary file written by writeBinary, such as
+	 * the ones kept by SolutionCache, to be written again.
+	 */
+	public PlanWriter(CFO c, ByteBuffer binary)
+	{
+		cfo = c;
+		x = null;
+		y = null;
+		ByteBuffer buffer = binary.slice().order(ByteOrder.LITTLE_ENDIAN);
+		int count = readRows(buffer);
+		objective = buffer.getDouble(32);
+		from = new int[count];
+		to = new int[count];
+		days = new int[count];
+		type = new byte[count];
+		value = new double[count];
+		interests = new double[count];
+		buffer.position(HEADER_BYTES);
+		for (int[] column : new int[][] { from, to, days }) {
+			buffer.asIntBuffer().get(column);
+			buffer.position(buffer.position() + 4 * count);
+		}
+		buffer.get(type);
+		buffer.position(HEADER_BYTES + 12 * count + (count + 7) / 8 * 8);
+		buffer.asDoubleBuffer().get(value);
+		buffer.position(buffer.position() + 8 * count);
+		buffer.asDoubleBuffer().get(interests);
+		rows = count;
+	}
+
+	private void collect() {
+		int count = 0;
+		for (double v : x)
+			if (v > 1)
+				count++;
+		for (double v : y)
+			if (v > 1)
+				count++;
+		from = new int[count];
+		to = new int[count];
+		days = new int[count];
+		type = new byte[count];
+		value = new double[count];
+		interests = new double[count];
+
+		for (int a = 0; a < x.length; a++)
+			if (x[a] > 1) {
+				int f = cfo.invFrom[a];
+				int t = cfo.invTo[a];
+				add(f, t, finDays(f, t), (byte) 0, x[a], (cfo.arcsCoeff.get(f, t) - 1) * x[a]);
+			}
+		for (int a = 0; a < y.length; a++)
+			if (y[a] > 1) {
+				int f = cfo.balFrom[a];
+				int t = cfo.balTo[a];
+				int d = finDays(f, t);
+				add(f, t, d, (byte) 1, y[a], balanceCoeff(d) * y[a]);
+			}
+	}
+
+	private void add(int f, int t, int d, byte kind, double v, double interest) {
+		from[rows] = f;
+		to[rows] = t;
+		days[rows] = d;
+		type[rows] = kind;
+		value[rows] = v;
+		interests[rows] = interest;
+		rows++;
+	}
+
+	private int finDays(int f, int t) {
+		return cfo.nodes.getFinDaysBetween(f, t);
+	}
+
+	/*
+	 * Same as CFO.getArcCoeff for a balance arc: the coefficient of an
+	 * investment for the arcs reaching the end of the horizon 30 or more
+	 * financial days later, and the savings account, which pays nothing, for the
+	 * others.
+	 */
+	private double balanceCoeff(int d) {
+		if (d > 29)
+			return cfo.arcsCoeff.forDuration(d);
+		return Math.pow(1.001, d / 360) - 1;
+	}
+
+	public void writeCsv(String fileName) throws IOException {
+		String[] dates = new String[cfo.nodes.size()];
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName), 1 << 16)) {
+			writer.write("start_date, days_between, end_date, value, interests, type");
+			writer.newLine();
+			StringBuilder line = new StringBuilder(96);
+			for (int r = 0; r < rows; r++) {
+				line.setLength(0);
+				line.append(date(dates, from[r])).append(',').append(days[r]).append(',').append(date(dates, to[r]))
+						.append(',');
+				appendAmount(line, value[r]);
+				line.append(',');
+				appendAmount(line, interests[r]);
+				line.append(',').append(type[r] == 0 ? "investment" : "balance");
+				writer.append(line);
+				writer.newLine();
+			}
+		}
+	}
+
+	private String date(String[] dates, int idx) {
+		if (dates[idx] == null)
+			dates[idx] = cfo.nodes.date(idx).toString();
+		return dates[idx];
+	}
+
+	/*
+	 * Appends v as DecimalFormat("#.##") does in Locale.US: rounded half even to
+	 * two decimals of its exact binary value, without trailing zeros. Values too
+	 * close to half a cent for the product by 100 to tell, very large values and
+	 * negative values go through BigDecimal or DecimalFormat instead, the latter
+	 * in Locale.US so that every row has the same decimal point.
+	 */
+	static void appendAmount(StringBuilder line, double v) {
+		double scaled = v * 100;
+		double floor = Math.floor(scaled);
+		double fraction = scaled - floor;
+		if (v < 0 || scaled >= 1e10 || Double.isNaN(v) || Math.abs(fraction - 0.5) < 1e-6) {
+			if (v < 0 || Double.isNaN(v) || Double.isInfinite(v))
+				line.append(new DecimalFormat("#.##", DecimalFormatSymbols.getInstance(Locale.US)).format(v));
+			else
+				line.append(new BigDecimal(v).setScale(2, RoundingMode.HALF_EVEN).stripTrailingZeros().toPlainString());
+			return;
+		}
+		long cents = (long) floor + (fraction > 0.5 ? 1 : 0);
+		line.append(cents / 100);
+		int rest = (int) (cents % 100);
+		if (rest != 0) {
+			line.append('.').append((char) ('0' + rest / 10));
+			if (rest % 10 != 0)
+				line.append((char) ('0' + rest % 10));
+		}
+	}
+
+	public void writeBinary(String fileName) throws IOException {
+		ByteBuffer buffer = toBinary();
+		try (RandomAccessFile file = new RandomAccessFile(fileName, "rw"); FileChannel channel = file.getChannel()) {
+			file.setLength(0);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+	}
+
+	// The binary file of writeBinary, in memory
+	ByteBuffer toBinary() {
+		int typeBytes = (rows + 7) / 8 * 8;
+		long size = HEADER_BYTES + 12L * rows + typeBytes + 16L * rows;
+		ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(new byte[] { 'C', 'F', 'O', 'P' });
+		buffer.putInt(VERSION).putInt(rows).putInt(0);
+		buffer.putLong(cfo.start.toEpochDay()).putLong(cfo.end.toEpochDay()).putDouble(objective);
+		buffer.asIntBuffer().put(from);
+		buffer.position(buffer.position() + 4 * rows);
+		buffer.asIntBuffer().put(to);
+		buffer.position(buffer.position() + 4 * rows);
+		buffer.asIntBuffer().put(days);
+		buffer.position(buffer.position() + 4 * rows);
+		buffer.put(type);
+		buffer.position(HEADER_BYTES + 12 * rows + typeBytes);
+		buffer.asDoubleBuffer().put(value);
+		buffer.position(buffer.position() + 8 * rows);
+		buffer.asDoubleBuffer().put(interests);
+		buffer.position(0);
+		return buffer;
+	}
+
+	/*
+	 * Investments of the plan as arcs of cfo, numbered as in CFO.indexArcs:
+	 * the amount of each one, zero for the arcs the plan does not use or cfo
+	 * lacks. The plan may come from another horizon with the same start, as
+	 * SolutionCache uses it; investments ending after the end of cfo are dropped.
+	 * Returns null when none is left.
+	 */
+	double[] investments() {
+		double[] amounts = new double[cfo.invFrom.length];
+		boolean any = false;
+		for (int r = 0; r < rows; r++) {
+			if (type[r] != 0)
+				continue;
+			int a = findArc(cfo.invFrom, cfo.invTo, from[r], to[r]);
+			if (a >= 0) {
+				amounts[a] = value[r];
+				any = true;
+			}
+		}
+		return any ? amounts : null;
+	}
+
+	// Arcs are numbered by start day and then by end day
+	private static int findArc(int[] arcFrom, int[] arcTo, int f, int t) {
+		int low = 0;
+		int high = arcFrom.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = arcFrom[mid] != f ? Integer.compare(arcFrom[mid], f) : Integer.compare(arcTo[mid], t);
+			if (c == 0)
+				return mid;
+			if (c < 0)
+				low = mid + 1;
+			else
+				high = mid - 1;
+		}
+		return -1;
+	}
+
+	/*
+	 * Rows of a binary plan written by writeBinary, for the programs that read
+	 * it from Java.
+	 */
+	public static int readRows(ByteBuffer mapped) {
+		mapped.order(ByteOrder.LITTLE_ENDIAN);
+		if (mapped.get(0) != 'C' || mapped.get(1) != 'F' || mapped.get(2) != 'O' || mapped.get(3) != 'P')
+			throw new IllegalArgumentException("Not a binary plan");
+		if (mapped.getInt(4) != VERSION)
+			throw new IllegalArgumentException("Unknown version " + mapped.getInt(4) + " of binary plan");
+		return mapped.getInt(8);
+	}
+
+	public static LocalDate readStart(ByteBuffer mapped) {
+		return LocalDate.ofEpochDay(mapped.order(ByteOrder.LITTLE_ENDIAN).getLong(16));
+	}
+}
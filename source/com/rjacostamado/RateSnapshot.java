@@ -0,0 +1,123 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/*
+ * Binary copy of the csv with the interest rates, so that runs map it instead
+ * of parsing the csv (see CFO.readData). It is written next to the csv, as
+ * <csv>.snapshot, the first time the csv is parsed, and written again whenever
+ * the csv no longer has the length and modification time recorded in it.
+ * Little endian, with the bands and dates sorted as RateTermStructure keeps
+ * them:
+ *
+ *   0  "CFOR", int version (1), int bands, int dates
+ *   16 long length and long modification time of the csv
+ *   32 int lower[bands], int upper[bands], int epochDay[dates], padding up to
+ *      a multiple of 8, double rates[bands * dates] (by band, then by date)
+ *
+ * To convert a csv ahead of time:
+ *
+ *   java RateSnapshot data/BankInterestRates.csv
+ */
+public class RateSnapshot
+{
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 32;
+	static final String EXTENSION = ".snapshot";
+
+	public static void main(String[] args) throws IOException {
+		for (String csv : args) {
+			new File(csv + EXTENSION).delete();
+			CFO.readData(csv);
+			System.out.println("Rates of " + csv + " written to " + csv + EXTENSION);
+		}
+	}
+
+	/*
+	 * Rates of the snapshot of the csv at path, or null when there is no
+	 * snapshot of its current version.
+	 */
+	static RateTermStructure read(String path) throws IOException {
+		File csv = new File(path);
+		File file = new File(path + EXTENSION);
+		if (!file.isFile() || !csv.isFile())
+			return null;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			if (channel.size() < HEADER_BYTES)
+				return null;
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			mapped.order(ByteOrder.LITTLE_ENDIAN);
+			if (mapped.get(0) != 'C' || mapped.get(1) != 'F' || mapped.get(2) != 'O' || mapped.get(3) != 'R'
+					|| mapped.getInt(4) != VERSION || mapped.getLong(16) != csv.length()
+					|| mapped.getLong(24) != csv.lastModified())
+				return null;
+			int bands = mapped.getInt(8);
+			int dates = mapped.getInt(12);
+			if (channel.size() != size(bands, dates))
+				return null;
+			int[] lower = new int[bands];
+			int[] upper = new int[bands];
+			int[] days = new int[dates];
+			double[] rates = new double[bands * dates];
+			mapped.position(HEADER_BYTES);
+			mapped.asIntBuffer().get(lower);
+			mapped.position(mapped.position() + 4 * bands);
+			mapped.asIntBuffer().get(upper);
+			mapped.position(mapped.position() + 4 * bands);
+			mapped.asIntBuffer().get(days);
+			mapped.position(HEADER_BYTES + intBytes(bands, dates));
+			mapped.asDoubleBuffer().get(rates);
+			return new RateTermStructure(lower, upper, days, rates);
+		}
+	}
+
+	/*
+	 * Writes the snapshot of the csv at path, which had the given length and
+	 * modification time when rates were read from it. A snapshot that cannot be
+	 * written, say because the folder is read only, is only reported.
+	 */
+	static void write(String path, RateTermStructure rates, long length, long modified) {
+		int bands = rates.lowerBounds.length;
+		int dates = rates.epochDays.length;
+		ByteBuffer buffer = ByteBuffer.allocate((int) size(bands, dates)).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(new byte[] { 'C', 'F', 'O', 'R' });
+		buffer.putInt(VERSION).putInt(bands).putInt(dates).putLong(length).putLong(modified);
+		for (int[] column : new int[][] { rates.lowerBounds, rates.upperBounds, rates.epochDays }) {
+			buffer.asIntBuffer().put(column);
+			buffer.position(buffer.position() + 4 * column.length);
+		}
+		buffer.position(HEADER_BYTES + intBytes(bands, dates));
+		buffer.asDoubleBuffer().put(rates.rates);
+		buffer.position(0);
+
+		File file = new File(path + EXTENSION);
+		File partial = new File(path + EXTENSION + ModelCache.PARTIAL + Long.toHexString(System.nanoTime()));
+		try {
+			try (RandomAccessFile raf = new RandomAccessFile(partial, "rw"); FileChannel channel = raf.getChannel()) {
+				raf.setLength(0);
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			}
+			Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			partial.delete();
+			System.out.println("Could not write the snapshot of the interest rates " + file + ": " + e);
+		}
+	}
+
+	// Bytes of the bounds and dates, padded up to a multiple of 8
+	private static int intBytes(int bands, int dates) {
+		return (4 * (2 * bands + dates) + 7) / 8 * 8;
+	}
+
+	private static long size(int bands, int dates) {
+		return HEADER_BYTES + intBytes(bands, dates) + 8L * bands * dates;
+	}
+}
@@ -0,0 +1,140 @@
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/*
+ * Interest rates offered by the bank, indexed by the duration band of the
+ * investment and by the date the rates were published. Each row of the csv
+ * with the interest rates defines a band [dLinf, dLsup] of durations sharing
+ * the same rate, so the rates are kept once per band and date instead of once
+ * per duration. Bands are sorted by their lower bound and the dates are kept
+ * as epoch days, so both are found by binary search. A date falling between
+ * two publication dates takes the rates in force at that time, that is, the
+ * rates published on the latest date not after it.
+ */
+public class RateTermStructure
+{
+	final int[] lowerBounds;
+	final int[] upperBounds;
+	final int[] epochDays;
+	// rates[band * epochDays.length + date]
+	final double[] rates;
+
+	public RateTermStructure(int[] lower, int[] upper, LocalDate[] dates, double[][] rowRates)
+	{
+		int bands = lower.length;
+		Integer[] rowOrder = new Integer[bands];
+		for (int i = 0; i < bands; i++)
+			rowOrder[i] = i;
+		Arrays.sort(rowOrder, (r1, r2) -> Integer.compare(lower[r1], lower[r2]));
+
+		Integer[] dateOrder = new Integer[dates.length];
+		for (int i = 0; i < dates.length; i++)
+			dateOrder[i] = i;
+		Arrays.sort(dateOrder, (d1, d2) -> dates[d1].compareTo(dates[d2]));
+
+		lowerBounds = new int[bands];
+		upperBounds = new int[bands];
+		epochDays = new int[dates.length];
+		rates = new double[bands * dates.length];
+		for (int j = 0; j < dates.length; j++)
+			epochDays[j] = (int) dates[dateOrder[j]].toEpochDay();
+		for (int i = 0; i < bands; i++) {
+			int row = rowOrder[i];
+			lowerBounds[i] = lower[row];
+			upperBounds[i] = upper[row];
+			if (i > 0 && lowerBounds[i] <= upperBounds[i - 1])
+				throw new IllegalArgumentException("Overlapping duration bands starting at " + lowerBounds[i - 1]
+						+ " and " + lowerBounds[i]);
+			for (int j = 0; j < dates.length; j++)
+				rates[i * dates.length + j] = rowRates[row][dateOrder[j]];
+		}
+	}
+
+	/*
+	 * Rates already sorted by band and by date, as RateSnapshot keeps them.
+	 */
+	RateTermStructure(int[] lower, int[] upper, int[] days, double[] r)
+	{
+		lowerBounds = lower;
+		upperBounds = upper;
+		epochDays = days;
+		rates = r;
+	}
+
+	public double getRate(LocalDate date, int duration) {
+		return getRate(date.toEpochDay(), duration);
+	}
+
+	/*
+	 * Rate in force on epochDay for an investment of the given duration.
+	 */
+	public double getRate(long epochDay, int duration) {
+		int band = findBand(duration);
+		if (band < 0)
+			throw new IllegalArgumentException("There are no interest rates for investments of " + duration + " days");
+		int column = findDate(epochDay);
+		if (column < 0)
+			throw new IllegalArgumentException("There are no interest rates in force on " + LocalDate.ofEpochDay(epochDay));
+		return rates[band * epochDays.length + column];
+	}
+
+	public boolean covers(int duration) {
+		return findBand(duration) >= 0;
+	}
+
+	public int getNumberOfDates() {
+		return epochDays.length;
+	}
+
+	public LocalDate getDate(int column) {
+		return LocalDate.ofEpochDay(epochDays[column]);
+	}
+
+	/*
+	 * Feeds the bands, dates and rates to digest, for the keys of ModelCache.
+	 */
+	public void update(MessageDigest digest) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 * (2 * lowerBounds.length + epochDays.length) + 8 * rates.length);
+		for (int i = 0; i < lowerBounds.length; i++)
+			buffer.putInt(lowerBounds[i]).putInt(upperBounds[i]);
+		for (int day : epochDays)
+			buffer.putInt(day);
+		for (double rate : rates)
+			buffer.putDouble(rate);
+		digest.update(buffer.array());
+	}
+
+	// Band containing the duration, or -1 when it falls outside every band
+	private int findBand(int duration) {
+		int low = 0;
+		int high = lowerBounds.length - 1;
+		int band = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (lowerBounds[mid] <= duration) {
+				band = mid;
+				low = mid + 1;
+			} else
+				high = mid - 1;
+		}
+		return (band >= 0 && duration <= upperBounds[band]) ? band : -1;
+	}
+
+	// Latest date not after epochDay, or -1 when epochDay is before every date
+	private int findDate(long epochDay) {
+		int low = 0;
+		int high = epochDays.length - 1;
+		int column = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (epochDays[mid] <= epochDay) {
+				column = mid;
+				low = mid + 1;
+			} else
+				high = mid - 1;
+		}
+		return column;
+	}
+}
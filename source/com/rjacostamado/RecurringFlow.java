@@ -0,0 +1,86 @@
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+/*
+ * An income (positive amount) or a bill (negative amount) that repeats on the
+ * same day of some months of every year, such as a salary paid on the 1st of
+ * each month or a bonus paid in June and December. Days past the end of a
+ * month fall on its last day.
+ *
+ * The amount is the one in force on the start of the horizon. It grows by
+ * escalationRate every year on the same day of escalationMonth, including on
+ * that day, even when the flow does not take place in that month: a bonus that
+ * escalates in January along with the salary is paid in June on the salary of
+ * that year. An escalationMonth of zero keeps the amount fixed.
+ */
+public class RecurringFlow
+{
+	static final int ALL_MONTHS = 0x1FFE;
+
+	final String name;
+	final double amount;
+	final int day;
+	// Bit m is set when the flow takes place in month m
+	final int months;
+	final int escalationMonth;
+	final double escalationRate;
+
+	public RecurringFlow(String n, double a, int d, int m, int em, double er)
+	{
+		if (d < 1 || d > 31)
+			throw new IllegalArgumentException("Day of flow " + n + " must be between 1 and 31, not " + d);
+		if (m == 0 || (m & ~ALL_MONTHS) != 0)
+			throw new IllegalArgumentException("Flow " + n + " must take place in some of the months 1 to 12");
+		if (em < 0 || em > 12)
+			throw new IllegalArgumentException("Escalation month of flow " + n + " must be between 0 and 12, not " + em);
+		name = n;
+		amount = a;
+		day = d;
+		months = m;
+		escalationMonth = em;
+		escalationRate = er;
+	}
+
+	// Flow taking place every month
+	public static RecurringFlow monthly(String n, double a, int d, int em, double er) {
+		return new RecurringFlow(n, a, d, ALL_MONTHS, em, er);
+	}
+
+	public static int months(int... values) {
+		int mask = 0;
+		for (int m : values) {
+			if (m < 1 || m > 12)
+				throw new IllegalArgumentException("Month must be between 1 and 12, not " + m);
+			mask |= 1 << m;
+		}
+		return mask;
+	}
+
+	/*
+	 * Adds the amount of every occurrence from start (inclusive) to end
+	 * (exclusive) to netFlow, indexed by the number of days since start. The
+	 * months are visited once each, so the work grows with the number of months
+	 * and not of days.
+	 */
+	void addTo(double[] netFlow, LocalDate start, LocalDate end) {
+		long first = start.toEpochDay();
+		double current = amount;
+		YearMonth last = YearMonth.from(end);
+		for (YearMonth month = YearMonth.from(start); !month.isAfter(last); month = month.plusMonths(1)) {
+			LocalDate date = month.atDay(Math.min(day, month.lengthOfMonth()));
+			if (date.isBefore(start))
+				continue;
+			if (!date.isBefore(end))
+				break;
+			if (month.getMonthValue() == escalationMonth)
+				current *= 1 + escalationRate;
+			if ((months & (1 << month.getMonthValue())) != 0)
+				netFlow[(int) (date.toEpochDay() - first)] += current;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
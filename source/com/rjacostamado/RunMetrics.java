@@ -0,0 +1,237 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * Metrics of a run of the optimizer, filled in by CFO as it goes: the wall time
+ * and the bytes allocated by each phase (see PHASES), the size of the network
+ * and of the model, and how the solver did. A phase run several times, such as
+ * the model assembly of a parameter sweep, adds up its times and counts its
+ * calls. Every method may be called from several threads at once.
+ *
+ * write saves them next to the plan, as <name>.metrics.json and as
+ * <name>.prom in the text format of Prometheus, labelled with the horizon, the
+ * date of the rates and the scenario.
+ */
+public class RunMetrics
+{
+	static final String[] PHASES = { "rate_load", "node_build", "arc_build", "coefficient_build", "presolve",
+			"cache_load", "model_assembly", "heuristic", "solve", "export" };
+
+	private static final com.sun.management.ThreadMXBean threads;
+
+	static {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			threads = (com.sun.management.ThreadMXBean) bean;
+			threads.setThreadAllocatedMemoryEnabled(true);
+		} else
+			threads = null;
+	}
+
+	/*
+	 * A phase being timed, from start until end is called on the same thread.
+	 */
+	public class Phase
+	{
+		final String name;
+		final long startTime;
+		final long startBytes;
+
+		Phase(String n)
+		{
+			name = n;
+			startBytes = allocatedBytes();
+			startTime = System.nanoTime();
+		}
+
+		public void end() {
+			long elapsed = System.nanoTime() - startTime;
+			record(name, elapsed / 1_000_000_000.0, allocatedBytes() - startBytes);
+		}
+	}
+
+	final String start;
+	final String end;
+	final String rates;
+	final String scenario;
+	// Seconds, bytes and calls of each phase
+	private final LinkedHashMap<String, double[]> phases = new LinkedHashMap<>();
+	private final LinkedHashMap<String, Double> values = new LinkedHashMap<>();
+	private String status;
+
+	public RunMetrics(CFO cfo)
+	{
+		start = cfo.start.toString();
+		end = cfo.end.toString();
+		rates = cfo.rates.toString();
+		scenario = cfo.scenario.getName() == null ? "default" : cfo.scenario.getName();
+		for (String phase : PHASES)
+			phases.put(phase, new double[3]);
+	}
+
+	private RunMetrics(RunMetrics other)
+	{
+		start = other.start;
+		end = other.end;
+		rates = other.rates;
+		scenario = other.scenario;
+		synchronized (other) {
+			for (Map.Entry<String, double[]> phase : other.phases.entrySet())
+				phases.put(phase.getKey(), phase.getValue().clone());
+			values.putAll(other.values);
+			status = other.status;
+		}
+	}
+
+	/*
+	 * The metrics so far, to go on with a run that must not add to these (see
+	 * WindowDecomposition).
+	 */
+	public RunMetrics copy() {
+		return new RunMetrics(this);
+	}
+
+	public Phase start(String phase) {
+		if (!phases.containsKey(phase))
+			throw new IllegalArgumentException("Unknown phase " + phase + ", expected one of " + phases.keySet());
+		return new Phase(phase);
+	}
+
+	public synchronized void record(String phase, double seconds, long bytes) {
+		double[] totals = phases.get(phase);
+		totals[0] += seconds;
+		totals[1] += bytes;
+		totals[2]++;
+	}
+
+	/*
+	 * Sets a count or a result of the solver, such as "variables" or "mip_gap".
+	 */
+	public synchronized void set(String name, double value) {
+		values.put(name, value);
+	}
+
+	// Sets name only the first time, for values such as the time to the first incumbent
+	public synchronized void setFirst(String name, double value) {
+		values.putIfAbsent(name, value);
+	}
+
+	public synchronized void setStatus(String s) {
+		status = s;
+	}
+
+	// Status set by the solver, or null when none was set
+	public synchronized String getStatus() {
+		return status;
+	}
+
+	// Value set for name, or NaN when none was set
+	public synchronized double get(String name) {
+		Double value = values.get(name);
+		return value == null ? Double.NaN : value;
+	}
+
+	/*
+	 * The phases that took any time, with their seconds, in one line such as
+	 * "node_build 0.002 s, arc_build 0.121 s, ...".
+	 */
+	public synchronized String summary() {
+		StringBuilder line = new StringBuilder();
+		for (Map.Entry<String, double[]> phase : phases.entrySet())
+			if (phase.getValue()[2] > 0)
+				line.append(line.length() == 0 ? "" : ", ").append(phase.getKey()).append(' ')
+						.append(String.format(Locale.US, "%.3f", phase.getValue()[0])).append(" s");
+		return line.toString();
+	}
+
+	/*
+	 * Bytes allocated so far by the current thread, or zero when the JVM does not
+	 * count them.
+	 */
+	static long allocatedBytes() {
+		if (threads == null)
+			return 0;
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/*
+	 * Writes the metrics to name.metrics.json and name.prom.
+	 */
+	public synchronized void write(String name) throws IOException {
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(name + ".metrics.json"))) {
+			writer.write(toJson());
+		}
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(name + ".prom"))) {
+			writer.write(toPrometheus());
+		}
+	}
+
+	synchronized String toJson() {
+		StringBuilder json = new StringBuilder("{\n");
+		json.append("  \"start\": ").append(quote(start)).append(",\n");
+		json.append("  \"end\": ").append(quote(end)).append(",\n");
+		json.append("  \"rates\": ").append(quote(rates)).append(",\n");
+		json.append("  \"scenario\": ").append(quote(scenario)).append(",\n");
+		json.append("  \"status\": ").append(status == null ? "null" : quote(status)).append(",\n");
+		json.append("  \"phases\": {");
+		String separator = "\n";
+		for (Map.Entry<String, double[]> phase : phases.entrySet()) {
+			double[] totals = phase.getValue();
+			json.append(separator).append("    \"").append(phase.getKey()).append("\": {\"seconds\": ")
+					.append(number(totals[0])).append(", \"allocated_bytes\": ").append((long) totals[1])
+					.append(", \"calls\": ").append((long) totals[2]).append('}');
+			separator = ",\n";
+		}
+		json.append("\n  }");
+		for (Map.Entry<String, Double> value : values.entrySet())
+			json.append(",\n  \"").append(value.getKey()).append("\": ").append(number(value.getValue()));
+		return json.append("\n}\n").toString();
+	}
+
+	synchronized String toPrometheus() {
+		String labels = "start=" + quote(start) + ",end=" + quote(end) + ",rates=" + quote(rates) + ",scenario="
+				+ quote(scenario);
+		StringBuilder text = new StringBuilder();
+		text.append("# HELP cfo_phase_seconds Wall time of each phase of the run.\n");
+		text.append("# TYPE cfo_phase_seconds gauge\n");
+		for (Map.Entry<String, double[]> phase : phases.entrySet())
+			text.append("cfo_phase_seconds{").append(labels).append(",phase=\"").append(phase.getKey()).append("\"} ")
+					.append(phase.getValue()[0]).append('\n');
+		text.append("# HELP cfo_phase_allocated_bytes Bytes allocated by each phase of the run.\n");
+		text.append("# TYPE cfo_phase_allocated_bytes gauge\n");
+		for (Map.Entry<String, double[]> phase : phases.entrySet())
+			text.append("cfo_phase_allocated_bytes{").append(labels).append(",phase=\"").append(phase.getKey())
+					.append("\"} ").append((long) phase.getValue()[1]).append('\n');
+		for (Map.Entry<String, Double> value : values.entrySet()) {
+			text.append("# TYPE cfo_").append(value.getKey()).append(" gauge\n");
+			text.append("cfo_").append(value.getKey()).append('{').append(labels).append("} ");
+			double v = value.getValue();
+			text.append(Double.isNaN(v) ? "NaN" : Double.isInfinite(v) ? (v > 0 ? "+Inf" : "-Inf") : number(v)).append('\n');
+		}
+		if (status != null) {
+			text.append("# HELP cfo_solver_status Status the solver ended with, as a label.\n");
+			text.append("# TYPE cfo_solver_status gauge\n");
+			text.append("cfo_solver_status{").append(labels).append(",status=").append(quote(status)).append("} 1\n");
+		}
+		return text.toString();
+	}
+
+	// Counts without a decimal point; NaN, which JSON lacks, as null
+	private static String number(double v) {
+		if (Double.isNaN(v) || Double.isInfinite(v))
+			return "null";
+		if (v == Math.rint(v) && Math.abs(v) < 1e15)
+			return Long.toString((long) v);
+		return Double.toString(v);
+	}
+
+	private static String quote(String s) {
+		return "\"" + s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+	}
+}
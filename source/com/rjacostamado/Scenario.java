@@ -0,0 +1,223 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Incomes, bills and pay days of a household. A scenario never changes once
+ * created: with returns a copy with one value changed, so the same scenario can
+ * be shared by several instances of CFO running at the same time. The amounts
+ * are the ones in force on the start of the horizon; getSchedule turns them
+ * into recurring flows that grow by inflation on the months given below.
+ */
+public class Scenario
+{
+	static final List<String> NAMES = Arrays.asList("payDay", "pasIncDay", "admPymt", "credCardsPymt",
+			"utilitiesPymt", "mortgagePymt", "passIncr", "salIncr", "admIncr", "credCardIncr", "utilIncr", "passIncm",
+			"admon", "credCards", "util", "sal", "mortgage", "infl", "savInt");
+
+	public static final Scenario DEFAULT = new Scenario();
+
+	// Used in the name of the files written for this scenario, null for none
+	final String name;
+	// Flows replacing the ones given by the values below, null for none
+	final CashFlowSchedule schedule;
+	/*
+	 * sets the day of the month the salary is paid. Cannot be 31, use any day
+	 * between 1 and 28. Otherwise, an adjustment is required for the month of
+	 * february.
+	 */
+	final int payDay;
+	/*
+	 * sets the day passive income (e.g.: rent from a owned property) as the fifth
+	 * day of each month.
+	 */
+	final int pasIncDay;
+	/*
+	 * the following lines of code set the days for the payment of the
+	 * administration, credit cards, water and gas bills and mortgage installment.
+	 * For simplicity, remember not to use any day between 29 and 31.
+	 */
+	final int admPymt;
+	final int credCardsPymt;
+	final int utilitiesPymt;
+	final int mortgagePymt;
+	/*
+	 * the following lines of code set the month of the year when inflation
+	 * increases on the passive income (passIncr), salary (salIncr, administration, credit cards and
+	 * utilities are effective.
+	 */
+	final int passIncr;
+	final int salIncr;
+	final int admIncr;
+	final int credCardIncr;
+	final int utilIncr;
+	/*
+	 * The following lines of code set the corresponding amounts for passive
+	 * income (passIncm), administration payment (admon), credit cards (credCards),
+	 *  utilities (util), salary (sal), mortgage, rate of inflation (infl) and
+	 *  the interest rate applied on the balance of a savings account (savInt).
+	 */
+	final double passIncm; // el 5
+	final double admon; // el 10
+	final double credCards; // el 15
+	final double util; // el 16
+	final double sal; // el 22
+	final double mortgage; // el 23
+	final double infl;
+	final double savInt;
+
+	private Scenario()
+	{
+		name = null;
+		schedule = null;
+		payDay = 1;
+		pasIncDay = 5;
+		admPymt = 10;
+		credCardsPymt = 15;
+		utilitiesPymt = 16;
+		mortgagePymt = 25;
+		passIncr = 1;
+		salIncr = 1;
+		admIncr = 1;
+		credCardIncr = 1;
+		utilIncr = 1;
+		passIncm = 1000;
+		admon = -400;
+		credCards = -8000;
+		util = -35;
+		sal = 12500;
+		mortgage = -1750;
+		infl = 0.05;
+		savInt = 0;
+	}
+
+	// Copy of s with the value called field set to v, or with name n when field is null
+	private Scenario(Scenario s, String n, String field, double v)
+	{
+		this(s, n, field, v, s.schedule);
+	}
+
+	private Scenario(Scenario s, String n, String field, double v, CashFlowSchedule c)
+	{
+		name = field == null ? n : s.name;
+		schedule = c;
+		payDay = field("payDay", field, s.payDay, v);
+		pasIncDay = field("pasIncDay", field, s.pasIncDay, v);
+		admPymt = field("admPymt", field, s.admPymt, v);
+		credCardsPymt = field("credCardsPymt", field, s.credCardsPymt, v);
+		utilitiesPymt = field("utilitiesPymt", field, s.utilitiesPymt, v);
+		mortgagePymt = field("mortgagePymt", field, s.mortgagePymt, v);
+		passIncr = field("passIncr", field, s.passIncr, v);
+		salIncr = field("salIncr", field, s.salIncr, v);
+		admIncr = field("admIncr", field, s.admIncr, v);
+		credCardIncr = field("credCardIncr", field, s.credCardIncr, v);
+		utilIncr = field("utilIncr", field, s.utilIncr, v);
+		passIncm = "passIncm".equals(field) ? v : s.passIncm;
+		admon = "admon".equals(field) ? v : s.admon;
+		credCards = "credCards".equals(field) ? v : s.credCards;
+		util = "util".equals(field) ? v : s.util;
+		sal = "sal".equals(field) ? v : s.sal;
+		mortgage = "mortgage".equals(field) ? v : s.mortgage;
+		infl = "infl".equals(field) ? v : s.infl;
+		savInt = "savInt".equals(field) ? v : s.savInt;
+	}
+
+	private static int field(String name, String field, int current, double value) {
+		if (!name.equals(field))
+			return current;
+		int day = (int) value;
+		int max = name.endsWith("Incr") ? 12 : 28;
+		if (day != value || day < 1 || day > max)
+			throw new IllegalArgumentException(name + " must be a whole number between 1 and " + max + ", not " + value);
+		return day;
+	}
+
+	/*
+	 * Copy of this scenario with the value called field (one of NAMES) set to
+	 * value.
+	 */
+	public Scenario with(String field, double value) {
+		if (!NAMES.contains(field))
+			throw new IllegalArgumentException("Unknown scenario value " + field + ", expected one of " + NAMES);
+		return new Scenario(this, null, field, value);
+	}
+
+	public Scenario named(String n) {
+		return new Scenario(this, n, null, 0);
+	}
+
+	/*
+	 * Copy of this scenario whose incomes and bills are the flows of c instead of
+	 * the ones given by its values.
+	 */
+	public Scenario withSchedule(CashFlowSchedule c) {
+		return new Scenario(this, name, null, 0, c);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/*
+	 * The incomes and bills of the household: the schedule given with
+	 * withSchedule or else the salary, with a bonus of half of it in June and
+	 * December, the passive income, administration, credit cards, utilities
+	 * and mortgage, on their days and growing with inflation on their months.
+	 */
+	public CashFlowSchedule getSchedule() {
+		if (schedule != null)
+			return schedule;
+		ArrayList<RecurringFlow> flows = new ArrayList<>();
+		flows.add(RecurringFlow.monthly("salary", sal, payDay, salIncr, infl));
+		flows.add(new RecurringFlow("bonus", 0.5 * sal, payDay, RecurringFlow.months(6, 12), salIncr, infl));
+		flows.add(RecurringFlow.monthly("passive income", passIncm, pasIncDay, passIncr, infl));
+		flows.add(RecurringFlow.monthly("administration", admon, admPymt, 0, 0));
+		flows.add(RecurringFlow.monthly("credit cards", credCards, credCardsPymt, credCardIncr, infl));
+		flows.add(RecurringFlow.monthly("utilities", util, utilitiesPymt, utilIncr, infl));
+		flows.add(RecurringFlow.monthly("mortgage", mortgage, mortgagePymt, 0, 0));
+		return new CashFlowSchedule(flows);
+	}
+
+	/*
+	 * Reads one scenario per row of a csv. The header holds the names of the
+	 * values given in the file, and a column called name, if any, names the
+	 * scenarios; the values missing from the file keep those of DEFAULT.
+	 * Scenarios without a name are named after their row. A column called flows
+	 * may give the csv with the schedule of a household (see
+	 * CashFlowSchedule.read).
+	 */
+	public static ArrayList<Scenario> readAll(String path) throws IOException {
+		ArrayList<Scenario> scenarios = new ArrayList<>();
+		try (BufferedReader csvReader = new BufferedReader(new FileReader(new File(path)))) {
+			String header = csvReader.readLine();
+			if (header == null)
+				return scenarios;
+			String[] columns = header.split(",");
+			String row;
+			while ((row = csvReader.readLine()) != null) {
+				if (row.trim().isEmpty())
+					continue;
+				String[] csvData = row.split(",");
+				Scenario scenario = DEFAULT.named("row" + (scenarios.size() + 1));
+				for (int i = 0; i < columns.length && i < csvData.length; i++) {
+					String column = columns[i].trim();
+					String value = csvData[i].trim();
+					if (value.isEmpty())
+						continue;
+					if (column.equals("name"))
+						scenario = scenario.named(value);
+					else if (column.equals("flows"))
+						scenario = scenario.withSchedule(CashFlowSchedule.read(value));
+					else
+						scenario = scenario.with(column, Double.parseDouble(value));
+				}
+				scenarios.add(scenario);
+			}
+		}
+		return scenarios;
+	}
+}
@@ -0,0 +1,127 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Solves the cash flow optimization problem for many scenarios (see Scenario)
+ * over the same horizon in one JVM. Each scenario gets its own instance of CFO,
+ * and at most parallelism of them are solved at the same time, each with its
+ * share of the threads of the machine. The interest rates must have been read
+ * (see CFO.readData) before calling run, since they are shared by all of them.
+ *
+ * Every scenario writes its own plan (see CFO.getOutputName), and a summary
+ * with the status, objective and gap of each one is written to
+ * scenarios_between_<start>_and_<end>.csv.
+ */
+public class ScenarioRunner
+{
+	public static class Outcome
+	{
+		public final Scenario scenario;
+		public String status;
+		public double objective = Double.NaN;
+		public double gap = Double.NaN;
+		public double seconds;
+
+		Outcome(Scenario s)
+		{
+			scenario = s;
+		}
+	}
+
+	final LocalDate start;
+	final LocalDate end;
+	final LocalDate rates;
+	final int parallelism;
+	boolean javaEngine = false;
+	boolean minInvestment = true;
+	boolean presolve = true;
+	boolean binaryPlan = false;
+	boolean balanceChain = false;
+	// Write the plan of HeuristicPlanner instead of solving (see CFO.planFast)
+	boolean fast = false;
+	boolean heuristicStart = true;
+	double deadline = 0;
+	ModelCache modelCache;
+	SolutionCache solutionCache;
+
+	public ScenarioRunner(LocalDate s, LocalDate e, LocalDate r, int p)
+	{
+		start = s;
+		end = e;
+		rates = r;
+		parallelism = p;
+	}
+
+	public List<Outcome> run(List<Scenario> scenarios) throws IOException, InterruptedException {
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / parallelism);
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		List<Future<Outcome>> futures = new ArrayList<>();
+		for (Scenario scenario : scenarios)
+			futures.add(pool.submit(() -> solve(scenario, threads)));
+		pool.shutdown();
+
+		List<Outcome> outcomes = new ArrayList<>();
+		for (int k = 0; k < futures.size(); k++)
+			try {
+				outcomes.add(futures.get(k).get());
+			} catch (ExecutionException e) {
+				e.getCause().printStackTrace();
+				Outcome outcome = new Outcome(scenarios.get(k));
+				outcome.status = "Error: " + e.getCause();
+				outcomes.add(outcome);
+			}
+
+		try (PrintWriter printWriter = new PrintWriter(
+				new FileWriter("scenarios_between_" + start + "_and_" + end + ".csv"))) {
+			printWriter.println("Scenario,Status,Objective,Gap,Duration");
+			for (Outcome outcome : outcomes)
+				printWriter.printf(Locale.US, "%s,%s,%.2f,%.6f,%.3f\n", outcome.scenario.getName(),
+						outcome.status.replace(',', ';'), outcome.objective, outcome.gap, outcome.seconds);
+		}
+		return outcomes;
+	}
+
+	private Outcome solve(Scenario scenario, int threads) throws IOException {
+		long startTime = System.nanoTime();
+		Outcome outcome = new Outcome(scenario);
+		CFO cfo = new CFO(start, end, rates, scenario);
+		cfo.binaryPlan = binaryPlan;
+		cfo.balanceChain = balanceChain;
+		cfo.modelCache = modelCache;
+		cfo.solutionCache = solutionCache;
+		cfo.heuristicStart = heuristicStart;
+		cfo.deadline = deadline;
+		cfo.CreateNodeDataBases(start, end);
+		cfo.setSinkAndSourceNodes();
+		cfo.buildNetwork(presolve);
+		if (fast) {
+			JavaFlowSolver.Result result = cfo.planFast(minInvestment);
+			outcome.status = result.status;
+			outcome.objective = result.objective;
+			outcome.gap = result.getGap();
+		} else if (javaEngine) {
+			JavaFlowSolver.Result result = cfo.optimizeCashFlowJava(minInvestment);
+			outcome.status = result.status;
+			outcome.objective = result.objective;
+			outcome.gap = result.getGap();
+		} else {
+			cfo.solverThreads = threads;
+			outcome.objective = cfo.optimizeCashFlow();
+			// optimizeCashFlow leaves the status and the gap of CPLEX in the metrics
+			String status = cfo.metrics.getStatus();
+			outcome.status = status != null ? status : Double.isNaN(outcome.objective) ? "NoSolution" : "Solved";
+			outcome.gap = cfo.metrics.get("mip_gap");
+		}
+		outcome.seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+		return outcome;
+	}
+}
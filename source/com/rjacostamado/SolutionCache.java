@@ -0,0 +1,307 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ilog.concert.IloException;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+/*
+ * Plans found before, so that a request repeating the same problem gets its
+ * plan back without solving it again. A plan is kept under a SHA-256 of the
+ * start, end and rate dates, the net flow of every day, the table of interest
+ * rates, M, minInv and whether the minimum applies, and it is only kept when
+ * it was proven optimal. The options that do not change the optimum, such as
+ * the presolve or how the investments are modelled, are left out.
+ *
+ * A problem that is not in the cache may still be close to one that is: the
+ * same household and rates over a shorter or longer horizon from the same
+ * start. The investments of the closest such plan, the one whose days have
+ * the same net flows over the longest stretch, are then given to the solver
+ * as a start (see start).
+ *
+ * Each plan is a file <key>.solution in the folder, little endian:
+ *
+ *   0  "CFOS", int version (1), int nodes, int padding
+ *   16 byte family[32] (SHA-256 of the inputs but the end and the net flows),
+ *      long end (epoch day), double objective
+ *   64 double netFlow[nodes], then the plan as PlanWriter.writeBinary writes it
+ *
+ * At most maxEntries plans are kept; the least recently used one is deleted
+ * when another one is stored. The cache is shared by the runs of a JVM, and
+ * the counts of hits, starts, misses and evictions are added to the metrics
+ * of every run using it (see stats).
+ */
+public class SolutionCache
+{
+	static final int VERSION = 1;
+	static final int HEADER_BYTES = 64;
+	static final String EXTENSION = ".solution";
+
+	// What is kept in memory of a plan to find it, its file holding the rest
+	private static class Entry
+	{
+		final String key;
+		final String family;
+		// Epoch day of the end of the horizon
+		final long end;
+		final double[] netFlows;
+		final File file;
+
+		Entry(String k, String f, long e, double[] n, File fl)
+		{
+			key = k;
+			family = f;
+			end = e;
+			netFlows = n;
+			file = fl;
+		}
+	}
+
+	final File folder;
+	final int maxEntries;
+	// Plans by key, the least recently used first
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long hits;
+	private long starts;
+	private long misses;
+	private long stores;
+	private long evictions;
+
+	public SolutionCache(String path, int max)
+	{
+		if (max < 1)
+			throw new IllegalArgumentException("The solution cache must hold at least one plan, not " + max);
+		folder = new File(path);
+		maxEntries = max;
+		if (!folder.isDirectory() && !folder.mkdirs())
+			throw new IllegalArgumentException("Cannot create the solution cache folder " + path);
+		File[] files = folder.listFiles((dir, name) -> name.endsWith(EXTENSION));
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files)
+			try {
+				Entry entry = readEntry(file);
+				if (entry != null)
+					entries.put(entry.key, entry);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		evict();
+	}
+
+	private static Entry readEntry(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(header, 0);
+			if (header.get(0) != 'C' || header.get(1) != 'F' || header.get(2) != 'O' || header.get(3) != 'S'
+					|| header.getInt(4) != VERSION)
+				return null;
+			int nodes = header.getInt(8);
+			byte[] family = new byte[32];
+			header.position(16);
+			header.get(family);
+			ByteBuffer flows = ByteBuffer.allocate(8 * nodes).order(ByteOrder.LITTLE_ENDIAN);
+			channel.read(flows, HEADER_BYTES);
+			flows.flip();
+			double[] netFlows = new double[nodes];
+			flows.asDoubleBuffer().get(netFlows);
+			String name = file.getName();
+			return new Entry(name.substring(0, name.length() - EXTENSION.length()), ModelCache.hex(family),
+					header.getLong(48), netFlows, file);
+		}
+	}
+
+	static byte[] family(CFO cfo, boolean minInvestment) {
+		MessageDigest digest = ModelCache.sha256();
+		ModelCache.update(digest, "solution " + VERSION);
+		ModelCache.update(digest, cfo.start + " " + cfo.rates + " chain " + cfo.balanceChain);
+		ModelCache.update(digest, "M " + CFO.M + " minInv " + CFO.minInv + " minimum " + minInvestment);
+		CFO.getInterestRates().update(digest);
+		return digest.digest();
+	}
+
+	static double[] netFlows(CFO cfo) {
+		double[] flows = new double[cfo.nodes.size()];
+		for (int idx = 0; idx < flows.length; idx++)
+			flows[idx] = cfo.nodes.netFlow[idx];
+		return flows;
+	}
+
+	static String key(byte[] family, CFO cfo, double[] flows) {
+		MessageDigest digest = ModelCache.sha256();
+		digest.update(family);
+		ModelCache.update(digest, cfo.end.toString());
+		ByteBuffer buffer = ByteBuffer.allocate(8 * flows.length);
+		for (double flow : flows)
+			buffer.putDouble(flow);
+		digest.update(buffer.array());
+		return ModelCache.hex(digest.digest());
+	}
+
+	/*
+	 * Writes the plan kept for the problem of cfo, as CFO.writeCashFlowCSV does,
+	 * and returns its objective, or returns NaN when there is none.
+	 */
+	public synchronized double replay(CFO cfo, boolean minInvestment) throws IOException {
+		Entry entry = entries.get(key(family(cfo, minInvestment), cfo, netFlows(cfo)));
+		if (entry == null) {
+			misses++;
+			cfo.metrics.set("solution_cache_hit", 0);
+			return Double.NaN;
+		}
+		ByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(entry.file, "r"); FileChannel channel = raf.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		buffer.position(HEADER_BYTES + 8 * entry.netFlows.length);
+		PlanWriter plan = new PlanWriter(cfo, buffer);
+		cfo.writePlan(plan);
+		entry.file.setLastModified(System.currentTimeMillis());
+		hits++;
+		cfo.metrics.set("solution_cache_hit", 1);
+		setMetrics(cfo.metrics);
+		System.out.println("Plan taken from " + entry.file + ", objective " + plan.objective);
+		return plan.objective;
+	}
+
+	/*
+	 * Investments of the closest plan kept for the same household and rates
+	 * from the same start, as amounts of the arcs of cfo numbered as in
+	 * CFO.indexArcs, or null when there is none. The closest plan is the one
+	 * whose days have the same net flows as cfo for the longest stretch.
+	 */
+	public synchronized double[] start(CFO cfo, boolean minInvestment) throws IOException {
+		String family = ModelCache.hex(family(cfo, minInvestment));
+		double[] flows = netFlows(cfo);
+		Entry closest = null;
+		int longest = 0;
+		for (Entry entry : entries.values()) {
+			if (!entry.family.equals(family) || entry.end == cfo.end.toEpochDay())
+				continue;
+			// The last day of either horizon has no flow constraint
+			int common = Math.min(flows.length, entry.netFlows.length) - 1;
+			int same = 0;
+			while (same < common && flows[same] == entry.netFlows[same])
+				same++;
+			if (same == common && common >= longest) {
+				closest = entry;
+				longest = common;
+			}
+		}
+		if (closest == null)
+			return null;
+		ByteBuffer buffer;
+		try (RandomAccessFile raf = new RandomAccessFile(closest.file, "r"); FileChannel channel = raf.getChannel()) {
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+		}
+		buffer.position(HEADER_BYTES + 8 * closest.netFlows.length);
+		double[] amounts = new PlanWriter(cfo, buffer).investments();
+		if (amounts == null)
+			return null;
+		// Marks it as used
+		entries.get(closest.key);
+		closest.file.setLastModified(System.currentTimeMillis());
+		starts++;
+		cfo.metrics.set("solution_cache_start", 1);
+		setMetrics(cfo.metrics);
+		System.out.println("Starting from the plan " + closest.file + " ending on "
+				+ LocalDate.ofEpochDay(closest.end));
+		return amounts;
+	}
+
+	/*
+	 * Keeps the plan found for cfo, which must be optimal, and drops the least
+	 * recently used plan when there are more than maxEntries.
+	 */
+	public synchronized void store(CFO cfo, boolean minInvestment, PlanWriter plan) throws IOException {
+		byte[] family = family(cfo, minInvestment);
+		double[] flows = netFlows(cfo);
+		String key = key(family, cfo, flows);
+		ByteBuffer binary = plan.toBinary();
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + 8 * flows.length + binary.remaining())
+				.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(new byte[] { 'C', 'F', 'O', 'S' });
+		buffer.putInt(VERSION).putInt(flows.length).putInt(0);
+		buffer.put(family).putLong(cfo.end.toEpochDay()).putDouble(plan.objective);
+		buffer.asDoubleBuffer().put(flows);
+		buffer.position(HEADER_BYTES + 8 * flows.length);
+		buffer.put(binary);
+		buffer.position(0);
+
+		File file = new File(folder, key + EXTENSION);
+		File partial = new File(folder, key + ModelCache.PARTIAL + Long.toHexString(System.nanoTime()));
+		try (RandomAccessFile raf = new RandomAccessFile(partial, "rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength(0);
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+		Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+		entries.put(key, new Entry(key, ModelCache.hex(family), cfo.end.toEpochDay(), flows, file));
+		stores++;
+		evict();
+		setMetrics(cfo.metrics);
+	}
+
+	private void evict() {
+		Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+		while (entries.size() > maxEntries && eldest.hasNext()) {
+			Entry entry = eldest.next().getValue();
+			eldest.remove();
+			if (entry.file.delete())
+				evictions++;
+		}
+	}
+
+	/*
+	 * Exact hits, near hits used as starts, misses and evictions so far, as in
+	 * "2 hits, 1 start, 3 misses (hit rate 40%), 0 evictions, 4 plans".
+	 */
+	public synchronized String stats() {
+		long lookups = hits + misses;
+		return hits + " hits, " + starts + " starts, " + misses + " misses (hit rate "
+				+ (lookups == 0 ? 0 : Math.round(100.0 * hits / lookups)) + "%), " + evictions + " evictions, "
+				+ entries.size() + " plans";
+	}
+
+	synchronized void setMetrics(RunMetrics metrics) {
+		long lookups = hits + misses;
+		metrics.set("solution_cache_hits", hits);
+		metrics.set("solution_cache_starts", starts);
+		metrics.set("solution_cache_misses", misses);
+		metrics.set("solution_cache_hit_rate", lookups == 0 ? 0 : (double) hits / lookups);
+		metrics.set("solution_cache_stores", stores);
+		metrics.set("solution_cache_evictions", evictions);
+		metrics.set("solution_cache_entries", entries.size());
+	}
+
+	/*
+	 * Gives CPLEX the investments of a plan as a MIP start: with either-or
+	 * constraints, which investments are made, the amounts being worked out with
+	 * them fixed; with semi-continuous investments, the amounts, to be repaired
+	 * if they are no longer feasible.
+	 */
+	static void addMIPStart(IloCplex smartSaver, CFO.Model model, double[] amounts) throws IloException {
+		if (model.z != null) {
+			double[] made = new double[amounts.length];
+			for (int a = 0; a < amounts.length; a++)
+				made[a] = amounts[a] > 0 ? 1 : 0;
+			smartSaver.addMIPStart(model.z, made, IloCplex.MIPStartEffort.SolveFixed);
+		} else {
+			IloNumVar[] vars = model.x;
+			smartSaver.addMIPStart(vars, amounts, IloCplex.MIPStartEffort.Repair);
+		}
+	}
+}
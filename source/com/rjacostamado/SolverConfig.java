@@ -0,0 +1,111 @@
+import ilog.cplex.*;
+import ilog.concert.*;
+import java.util.Locale;
+
+/*
+ * One combination of the CPLEX parameters explored by ParameterSweep and
+ * SolverTuner. Its text form is the comma separated list of the values in the
+ * order of the columns of their csv files, so it doubles as the key of the
+ * combination in those files.
+ */
+public class SolverConfig
+{
+	// Possible values for each parameter
+	static int[] branchingStrategies = {0, 1, 2};  // e.g., 0: auto, 1: down, 2: up
+	static int[] nodeSelections = {0, 1, 2};       // 0: depth-first, 1: best-bound, 2: best-estimate
+	static int[] cutStrategies = {-1, 0, 1, 2, 3}; // -1: none, 0: auto, 1+: more aggressive cuts
+	static int[] heuristicFreqs = {-1, 0, 5, 10};  // -1: disable, 0: auto, 5, 10: every N nodes
+	static int[] threadCounts = {1, 2, 4};         // Number of threads to use
+	static double[] mipgaps = {0.01, 0.001, 0.0001}; // Tolerance for optimality gap
+	static int[] mipEmphasis = {0, 1, 2, 3, 4};    // 0: balanced, 1: feasibility, 2: optimality, etc.
+	static boolean[] presolveSettings = {true, false}; // Enable/Disable presolve
+
+	static final String HEADER = "Branch,NodeSel,Cut,HeuristicFreq,Threads,MipGap,Emphasis,Presolve";
+	static final int FIELDS = 8;
+
+	final int branch;
+	final int nodeSel;
+	final int cut;
+	final int heuristicFreq;
+	final int threads;
+	final double mipgap;
+	final int emphasis;
+	final boolean presolve;
+
+	public SolverConfig(int b, int n, int c, int h, int t, double g, int e, boolean p)
+	{
+		branch = b;
+		nodeSel = n;
+		cut = c;
+		heuristicFreq = h;
+		threads = t;
+		mipgap = g;
+		emphasis = e;
+		presolve = p;
+	}
+
+	public static int getNumberOfCombinations() {
+		return branchingStrategies.length * nodeSelections.length * cutStrategies.length * heuristicFreqs.length
+				* threadCounts.length * mipgaps.length * mipEmphasis.length * presolveSettings.length;
+	}
+
+	/*
+	 * Combination number k of the grid, the last parameter varying fastest.
+	 */
+	public static SolverConfig get(int combination) {
+		int[] sizes = {branchingStrategies.length, nodeSelections.length, cutStrategies.length, heuristicFreqs.length,
+				threadCounts.length, mipgaps.length, mipEmphasis.length, presolveSettings.length};
+		int[] p = new int[sizes.length];
+		for (int k = sizes.length - 1; k >= 0; k--) {
+			p[k] = combination % sizes[k];
+			combination /= sizes[k];
+		}
+		return new SolverConfig(branchingStrategies[p[0]], nodeSelections[p[1]], cutStrategies[p[2]],
+				heuristicFreqs[p[3]], threadCounts[p[4]], mipgaps[p[5]], mipEmphasis[p[6]], presolveSettings[p[7]]);
+	}
+
+	/*
+	 * Reads a combination from fields[from], ..., fields[from + 7].
+	 */
+	public static SolverConfig parse(String[] fields, int from) {
+		if (fields.length < from + FIELDS)
+			throw new IllegalArgumentException("Expected " + FIELDS + " solver parameters from column " + from);
+		return new SolverConfig(Integer.parseInt(fields[from].trim()), Integer.parseInt(fields[from + 1].trim()),
+				Integer.parseInt(fields[from + 2].trim()), Integer.parseInt(fields[from + 3].trim()),
+				Integer.parseInt(fields[from + 4].trim()), Double.parseDouble(fields[from + 5].trim()),
+				Integer.parseInt(fields[from + 6].trim()), Boolean.parseBoolean(fields[from + 7].trim()));
+	}
+
+	/*
+	 * Sets the parameters on smartSaver, starting from the defaults. MIP starts
+	 * added afterwards are still used, as in production (see CFO.configure).
+	 */
+	public void apply(IloCplex smartSaver) throws IloException {
+		smartSaver.setDefaults();
+		smartSaver.setParam(IloCplex.Param.MIP.Strategy.VariableSelect, 3);
+		smartSaver.setParam(IloCplex.Param.MIP.Strategy.Branch, branch);
+		smartSaver.setParam(IloCplex.Param.MIP.Strategy.NodeSelect, nodeSel);
+		smartSaver.setParam(IloCplex.Param.MIP.Cuts.Gomory, cut);
+		smartSaver.setParam(IloCplex.Param.MIP.Strategy.HeuristicFreq, heuristicFreq);
+		smartSaver.setParam(IloCplex.Param.Threads, threads);
+		smartSaver.setParam(IloCplex.Param.MIP.Tolerances.MIPGap, mipgap);
+		smartSaver.setParam(IloCplex.Param.Emphasis.MIP, emphasis);
+		smartSaver.setParam(IloCplex.Param.Preprocessing.Presolve, presolve);
+	}
+
+	/*
+	 * Sets the parameters as apply does, and without the solution of a previous
+	 * solve or any MIP start, so that the outcome of a trial (see SolverTuner
+	 * and ParameterSweep) does not depend on what was solved before.
+	 */
+	public void applyFromScratch(IloCplex smartSaver) throws IloException {
+		apply(smartSaver);
+		smartSaver.setParam(IloCplex.Param.Advance, 0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.US, "%d,%d,%d,%d,%d,%.6f,%d,%b", branch, nodeSel, cut, heuristicFreq, threads,
+				mipgap, emphasis, presolve);
+	}
+}
@@ -0,0 +1,208 @@
+import ilog.cplex.*;
+import ilog.concert.*;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/*
+ * Looks for good CPLEX parameters by successive halving instead of solving
+ * every combination to the end as ParameterSweep does. A random sample of the
+ * combinations is solved with a short time limit; only the best third is kept
+ * and solved again with three times the time limit, and so on until a single
+ * combination is left. Bad settings are therefore dropped after a few short
+ * solves and most of the time is spent on the promising ones.
+ *
+ * Within a round, a combination is better than another one when it finds a
+ * plan and the other does not, when its plan yields more money at the end of
+ * the horizon, or, for plans as good as the best one of the round, when it
+ * needs less time. The winner is saved in tuned_solver_configs.csv keyed by
+ * the number of nodes and arcs of the network, and optimizeCashFlow uses it
+ * for networks of about the same size (see load).
+ */
+public class SolverTuner
+{
+	static final String CONFIG_FILE = "tuned_solver_configs.csv";
+	static final String HEADER = "Nodes,Arcs," + SolverConfig.HEADER + ",Seconds";
+	// Two plans whose objectives differ by less than this fraction are as good
+	static final double TOLERANCE = 1e-4;
+
+	private static class Trial
+	{
+		final SolverConfig config;
+		double objective = Double.NaN;
+		double seconds = Double.POSITIVE_INFINITY;
+
+		Trial(SolverConfig c)
+		{
+			config = c;
+		}
+	}
+
+	final CFO cfo;
+	int sample = 81;
+	int eta = 3;
+	double initialTimeLimit = 5;
+	long seed = 1;
+
+	public SolverTuner(CFO c)
+	{
+		cfo = c;
+	}
+
+	public SolverConfig tune() throws IOException {
+		cfo.indexArcs();
+		int nodes = cfo.nodes.size();
+		int arcs = cfo.invFrom.length + cfo.balFrom.length;
+
+		int total = SolverConfig.getNumberOfCombinations();
+		List<Integer> combinations = new ArrayList<>();
+		for (int k = 0; k < total; k++)
+			combinations.add(k);
+		Collections.shuffle(combinations, new Random(seed));
+		List<Trial> trials = new ArrayList<>();
+		for (int k = 0; k < Math.min(sample, total); k++)
+			trials.add(new Trial(SolverConfig.get(combinations.get(k))));
+
+		try (IloCplex smartSaver = new IloCplex()) {
+			smartSaver.setOut(null);
+			cfo.buildModel(smartSaver);
+			double timeLimit = initialTimeLimit;
+			int round = 1;
+			while (trials.size() > 1) {
+				for (Trial trial : trials)
+					solve(smartSaver, trial, timeLimit);
+				rank(trials);
+				int keep = (trials.size() + eta - 1) / eta;
+				System.out.println("Round " + round + ": " + trials.size() + " combinations with " + timeLimit
+						+ " seconds each, best " + trials.get(0).config + " (" + trials.get(0).objective + " in "
+						+ trials.get(0).seconds + " seconds)");
+				trials = new ArrayList<>(trials.subList(0, keep));
+				timeLimit *= eta;
+				round++;
+			}
+			smartSaver.end();
+		} catch (IloException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		Trial best = trials.get(0);
+		if (Double.isNaN(best.objective)) {
+			System.out.println("No combination found a plan, nothing saved.");
+			return null;
+		}
+		save(nodes, arcs, best.config, best.seconds);
+		System.out.println("Best combination for " + nodes + " nodes and " + arcs + " arcs: " + best.config);
+		return best.config;
+	}
+
+	private void solve(IloCplex smartSaver, Trial trial, double timeLimit) {
+		trial.objective = Double.NaN;
+		trial.seconds = Double.POSITIVE_INFINITY;
+		try {
+			trial.config.applyFromScratch(smartSaver);
+			smartSaver.setParam(IloCplex.Param.TimeLimit, timeLimit);
+			long startTime = System.nanoTime();
+			boolean solved = smartSaver.solve();
+			double seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+			if (solved) {
+				trial.objective = smartSaver.getObjValue();
+				trial.seconds = seconds;
+			}
+		} catch (IloException e) {
+			// e.g. a value out of the range of its parameter, the combination is dropped
+			System.out.println("Combination " + trial.config + " failed: " + e.getMessage());
+		}
+	}
+
+	private static void rank(List<Trial> trials) {
+		double best = Double.NEGATIVE_INFINITY;
+		for (Trial trial : trials)
+			if (!Double.isNaN(trial.objective))
+				best = Math.max(best, trial.objective);
+		double threshold = best - TOLERANCE * Math.abs(best);
+		trials.sort((t1, t2) -> {
+			boolean solved1 = !Double.isNaN(t1.objective);
+			boolean solved2 = !Double.isNaN(t2.objective);
+			if (solved1 != solved2)
+				return solved1 ? -1 : 1;
+			if (!solved1)
+				return 0;
+			boolean good1 = t1.objective >= threshold;
+			boolean good2 = t2.objective >= threshold;
+			if (good1 != good2)
+				return good1 ? -1 : 1;
+			if (!good1)
+				return Double.compare(t2.objective, t1.objective);
+			return Double.compare(t1.seconds, t2.seconds);
+		});
+	}
+
+	/*
+	 * Stores the combination for networks of this size, replacing the one saved
+	 * before for the same size if any.
+	 */
+	static void save(int nodes, int arcs, SolverConfig config, double seconds) throws IOException {
+		List<String> rows = new ArrayList<>();
+		File file = new File(CONFIG_FILE);
+		if (file.exists())
+			try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+				String row = reader.readLine();
+				while ((row = reader.readLine()) != null) {
+					String[] fields = row.split(",");
+					if (fields.length < 2 + SolverConfig.FIELDS)
+						continue;
+					if (Integer.parseInt(fields[0]) != nodes || Integer.parseInt(fields[1]) != arcs)
+						rows.add(row);
+				}
+			}
+		rows.add(String.format(Locale.US, "%d,%d,%s,%.3f", nodes, arcs, config, seconds));
+		try (PrintWriter printWriter = new PrintWriter(new FileWriter(file))) {
+			printWriter.println(HEADER);
+			for (String row : rows)
+				printWriter.println(row);
+		}
+	}
+
+	/*
+	 * Combination saved for the network closest in number of arcs to the given
+	 * one, as long as it has between half and twice as many arcs; null when no
+	 * network that close has been tuned.
+	 */
+	static SolverConfig load(int nodes, int arcs) {
+		File file = new File(CONFIG_FILE);
+		if (!file.exists())
+			return null;
+		SolverConfig best = null;
+		double bestDistance = Math.log(2);
+		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+			String row = reader.readLine();
+			while ((row = reader.readLine()) != null) {
+				String[] fields = row.split(",");
+				if (fields.length < 2 + SolverConfig.FIELDS)
+					continue;
+				int n = Integer.parseInt(fields[0]);
+				int a = Integer.parseInt(fields[1]);
+				double distance = Math.abs(Math.log((double) a / arcs));
+				if (n == nodes && a == arcs)
+					return SolverConfig.parse(fields, 2);
+				if (distance <= bestDistance) {
+					bestDistance = distance;
+					best = SolverConfig.parse(fields, 2);
+				}
+			}
+		} catch (IOException | IllegalArgumentException e) {
+			e.printStackTrace();
+			return null;
+		}
+		return best;
+	}
+}
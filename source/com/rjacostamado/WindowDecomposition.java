@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+ * Solves the cash flow optimization problem by time windows, for horizons
+ * close to 1799 days, where the model of the whole network takes too long to
+ * solve and too much memory. It starts from the plan of HeuristicPlanner and
+ * improves it by fix and optimize: the horizon is cut into windows of
+ * windowDays days, and for each window the problem is solved again for the
+ * investments starting in it, and in the overlap days before it, with every
+ * other investment fixed at its amount in the plan (see CFO.restrictedTo).
+ * The fixed investments move money between the days as the incomes and bills
+ * do, so each window gets the balance left to it by the days before and the
+ * money maturing into it, and must leave enough for the bills after it. Only
+ * the investment arcs of the window are in its model.
+ *
+ * The windows of a pass are solved at the same time, at most parallelism of
+ * them, each starting from the plan (a MIP start for CPLEX, the first
+ * incumbent of JavaFlowSolver) so none does worse. Their investments are then
+ * put in the plan, the window earning the most first, as long as the plan
+ * stays feasible and earns more. Every other pass cuts the windows half a
+ * window later, and the passes stop when two in a row do not improve the plan
+ * or after maxPasses of them. The plan meets the minimum investment, but it is
+ * not proven optimal.
+ */
+public class WindowDecomposition
+{
+	final CFO cfo;
+	final int parallelism;
+	int windowDays = 365;
+	int overlap = 30;
+	int maxPasses = 10;
+	boolean javaEngine = false;
+	boolean minInvestment = true;
+	int passes;
+	int windows;
+
+	// Plan of a window: its investment arcs and their amounts
+	private static class WindowPlan
+	{
+		final int[] arcs;
+		double[] x;
+		double objective = Double.NaN;
+
+		WindowPlan(int[] a)
+		{
+			arcs = a;
+		}
+	}
+
+	private int last;
+	private double[] coeff;
+
+	public WindowDecomposition(CFO c, int p)
+	{
+		cfo = c;
+		parallelism = p;
+	}
+
+	/*
+	 * Finds the plan and writes it, tagged as windows (see CFO.getOutputName),
+	 * with its metrics. The status of the result is Feasible, or Infeasible when
+	 * HeuristicPlanner finds no plan to start from. The phases and results of
+	 * the decomposition go to a copy of the metrics of cfo, so the metrics of
+	 * cfo are left as they were for a solve of the whole model.
+	 */
+	public JavaFlowSolver.Result run() throws IOException, InterruptedException {
+		// Numbered first, so that the sizes of the network are in both metrics
+		cfo.indexArcs();
+		RunMetrics metrics = cfo.metrics;
+		cfo.metrics = metrics.copy();
+		try {
+			return decompose();
+		} finally {
+			System.out.println("Decomposition time by phase: " + cfo.metrics.summary());
+			cfo.metrics = metrics;
+		}
+	}
+
+	private JavaFlowSolver.Result decompose() throws IOException, InterruptedException {
+		long startTime = System.nanoTime();
+		RunMetrics.Phase phase = cfo.metrics.start("heuristic");
+		HeuristicPlanner planner = new HeuristicPlanner(cfo, minInvestment);
+		JavaFlowSolver.Result result = planner.plan();
+		phase.end();
+		if (result == null) {
+			result = new JavaFlowSolver.Result();
+			result.status = "Infeasible";
+			System.out.println("No plan to start the decomposition from");
+			return result;
+		}
+		last = cfo.nodes.size() - 1;
+		coeff = new double[cfo.invFrom.length];
+		for (int a = 0; a < coeff.length; a++)
+			coeff[a] = cfo.arcsCoeff.get(cfo.invFrom[a], cfo.invTo[a]);
+		double[] x = result.x;
+		double objective = result.objective;
+		System.out.println("Decomposition starting from a heuristic plan with objective " + objective);
+
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / parallelism);
+		ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+		phase = cfo.metrics.start("solve");
+		try {
+			int stalled = 0;
+			for (passes = 0; passes < maxPasses && stalled < 2;) {
+				int[] cuts = cuts(passes % 2 == 0 ? 0 : windowDays / 2);
+				windows = Math.max(windows, cuts.length - 1);
+				List<Future<WindowPlan>> futures = new ArrayList<>();
+				for (int k = 0; k + 1 < cuts.length; k++) {
+					int[] arcs = arcsStarting(Math.max(0, cuts[k] - overlap), cuts[k + 1]);
+					double[] plan = x;
+					futures.add(pool.submit(() -> solve(arcs, plan, threads)));
+				}
+				List<WindowPlan> plans = new ArrayList<>();
+				for (Future<WindowPlan> future : futures)
+					try {
+						WindowPlan plan = future.get();
+						if (plan.x != null)
+							plans.add(plan);
+					} catch (ExecutionException e) {
+						e.getCause().printStackTrace();
+					}
+				plans.sort((p, q) -> Double.compare(q.objective, p.objective));
+
+				double before = objective;
+				double[] balance = new double[last + 1];
+				for (WindowPlan plan : plans) {
+					double[] merged = x.clone();
+					for (int k = 0; k < plan.arcs.length; k++)
+						merged[plan.arcs[k]] = plan.x[k];
+					double value = evaluate(merged, balance);
+					if (value > objective + FlowSimplex.FEAS_TOL) {
+						x = merged;
+						objective = value;
+					}
+				}
+				passes++;
+				System.out.println("Pass " + passes + " over " + (cuts.length - 1) + " windows: objective " + objective);
+				stalled = objective - before > 1e-7 * Math.abs(before) ? 0 : stalled + 1;
+			}
+		} finally {
+			pool.shutdown();
+			phase.end();
+		}
+
+		double[] balance = new double[last + 1];
+		result.x = x;
+		result.objective = evaluate(x, balance);
+		result.y = new double[cfo.balFrom.length];
+		for (int a = 0; a < cfo.balFrom.length; a++)
+			if (cfo.balTo[a] == cfo.balFrom[a] + 1)
+				result.y[a] = Math.max(0, balance[cfo.balFrom[a]]);
+		result.status = "Feasible";
+		result.seconds = (System.nanoTime() - startTime) / 1_000_000_000.0;
+		System.out.println("Decomposition into " + windows + " windows of " + windowDays + " days found objective "
+				+ result.objective + " in " + passes + " passes and " + result.seconds + " seconds");
+
+		cfo.metrics.setStatus(result.status);
+		cfo.metrics.set("objective", result.objective);
+		cfo.metrics.set("windows", windows);
+		cfo.metrics.set("window_passes", passes);
+		String tag = cfo.outputTag;
+		cfo.outputTag = tag == null ? "windows" : tag + "_windows";
+		try {
+			cfo.writeCashFlowCSV(result.x, result.y, result.objective);
+			cfo.metrics.write(cfo.getOutputName("cfo"));
+		} finally {
+			cfo.outputTag = tag;
+		}
+		return result;
+	}
+
+	// First day of each window, starting offset days after a window, and the last day
+	private int[] cuts(int offset) {
+		int[] cuts = new int[last / windowDays + 3];
+		int n = 0;
+		cuts[n++] = 0;
+		for (int day = offset == 0 ? windowDays : offset; day < last; day += windowDays)
+			cuts[n++] = day;
+		cuts[n++] = last;
+		return Arrays.copyOf(cuts, n);
+	}
+
+	// Investment arcs starting from first to end - 1, numbered as in CFO.indexArcs
+	private int[] arcsStarting(int first, int end) {
+		int[] from = cfo.invFrom;
+		int begin = 0;
+		while (begin < from.length && from[begin] < first)
+			begin++;
+		int stop = begin;
+		while (stop < from.length && from[stop] < end)
+			stop++;
+		int[] arcs = new int[stop - begin];
+		for (int k = 0; k < arcs.length; k++)
+			arcs[k] = begin + k;
+		return arcs;
+	}
+
+	/*
+	 * Solves the problem for the investments of arcs with the others fixed as in
+	 * plan. The objective of the result is the one of the whole plan.
+	 */
+	private WindowPlan solve(int[] arcs, double[] plan, int threads) {
+		WindowPlan window = new WindowPlan(arcs);
+		boolean[] free = new boolean[plan.length];
+		for (int a : arcs)
+			free[a] = true;
+		double[] netFlow = cfo.nodes.netFlow.clone();
+		// Money the fixed investments put into the last day, which the window does not see
+		double fixed = 0;
+		for (int a = 0; a < plan.length; a++)
+			if (!free[a] && plan[a] > 0) {
+				netFlow[cfo.invFrom[a]] -= plan[a];
+				if (cfo.invTo[a] < last)
+					netFlow[cfo.invTo[a]] += coeff[a] * plan[a];
+				else
+					fixed += coeff[a] * plan[a];
+			}
+		double[] start = new double[arcs.length];
+		for (int k = 0; k < arcs.length; k++)
+			start[k] = plan[arcs[k]];
+
+		CFO view = cfo.restrictedTo(arcs, netFlow);
+		JavaFlowSolver.Result result;
+		if (javaEngine) {
+			JavaFlowSolver solver = new JavaFlowSolver(view, minInvestment);
+			if (view.deadline > 0)
+				solver.timeLimit = view.deadline;
+			solver.startPlan = new boolean[arcs.length];
+			for (int k = 0; k < arcs.length; k++)
+				solver.startPlan[k] = start[k] > 0;
+			result = solver.solve();
+		} else {
+			view.solverThreads = threads;
+			result = view.solveModel(start);
+		}
+		if (result.x != null) {
+			window.x = result.x;
+			window.objective = result.objective + fixed;
+		}
+		return window;
+	}
+
+	/*
+	 * Objective of a plan making the investments x, with the money carried from
+	 * each day to the next in balance, or NaN when the balance of a day would
+	 * go below zero. balance gets the money carried from each day.
+	 */
+	private double evaluate(double[] x, double[] balance) {
+		Arrays.fill(balance, 0);
+		for (int idx = 0; idx < last; idx++)
+			balance[idx] = cfo.nodes.netFlow[idx];
+		for (int a = 0; a < x.length; a++)
+			if (x[a] > 0) {
+				balance[cfo.invFrom[a]] -= x[a];
+				balance[cfo.invTo[a]] += coeff[a] * x[a];
+			}
+		for (int idx = 0; idx < last; idx++) {
+			if (idx > 0)
+				balance[idx] += balance[idx - 1];
+			if (balance[idx] < -FlowSimplex.FEAS_TOL)
+				return Double.NaN;
+		}
+		balance[last] += balance[last - 1];
+		return balance[last];
+	}
+}